@@ -10,6 +10,8 @@ import javax.swing.SwingUtilities;
 
 import voxspell.newquiz.QuizScreen;
 import voxspell.scoreboard.ScoreboardScreen;
+import voxspell.sounds.SpeechPrewarmer;
+import voxspell.videoplayer.MediaPlayerRuntime;
 import voxspell.wordlist.entirelist.ChangeEntireWordListScreen;
 import voxspell.wordlist.partiallist.ChangePartialWordListScreen;
 
@@ -96,6 +98,12 @@ public class VoxSpellApp extends JPanel {
 		frame.setResizable(false);
 		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 		frame.setVisible(true); //Display the window		
+
+		//Continue rendering speeches that were left unfinished when the application was last closed
+		SpeechPrewarmer.getInstance().resumeUnfinishedPrewarmInBackground();
+
+		//Load libVLC in the background, so that the first review video does not have to wait for it
+		MediaPlayerRuntime.getInstance().warmUpInBackground();
 	}
 
 	public static void main(String[] args) {
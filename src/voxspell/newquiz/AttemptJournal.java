@@ -0,0 +1,523 @@
+package voxspell.newquiz;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import voxspell.newquiz.HiddenQuizFilesModel.QuizCategory;
+import voxspell.newquiz.HiddenQuizFilesModel.WordMastery;
+
+/**
+ * An append-only journal of every attempt the user has made at spelling a word in a single category.
+ * This replaces the Mastered/Faulted/Failed text files.
+ *
+ * Files in the category's folder:
+ * + WordIds: one word per line, the line number (starting at 0) is the word's id. Only ever appended to.
+ * + Attempts.journal: a header (magic, generation) followed by fixed-size records (word id, outcome, timestamp, attempt number)
+ * + Attempts.snapshot: the persistent WordStatsCounters table (mastered, faulted, failed per word id) of all records that have been compacted out of the journal
+ *
+ * Records are buffered in memory and written to the journal in groups through a single long-lived FileChannel (see flush()).
+ * Once the journal has grown large enough, it is compacted into a new snapshot.
+ * The generation number makes compaction crash safe: a journal whose generation is older than the snapshot's has already
+ * been compacted into the snapshot and is discarded instead of being replayed.
+ * @author echa232
+ *
+ */
+class AttemptJournal {
+
+	private static final int JOURNAL_MAGIC = 0x56584a31; //"VXJ1"
+	private static final int SNAPSHOT_MAGIC = 0x56585331; //"VXS1"
+	private static final int JOURNAL_HEADER_SIZE = 4 + 8; //magic, generation
+	static final int RECORD_SIZE = 4 + 1 + 8 + 4; //word id, outcome, timestamp, attempt number
+
+	//Outcome of a record that clears all previous attempts of the word (used when a word is removed from the word list)
+	private static final byte OUTCOME_CLEARED = -1;
+
+	//Number of journal records after which the journal is compacted into the snapshot
+	private static final int COMPACTION_THRESHOLD = 8192;
+
+	private QuizCategory _category;
+	private Path _wordIdsFilePath;
+	private Path _journalFilePath;
+	private Path _snapshotFilePath;
+
+	/*
+	 * In-memory state, always up to date with every recorded attempt (including those not yet flushed)
+	 */
+	private WordStatsCounters _counters;
+
+	/*
+	 * Group commit state
+	 */
+	private ByteBuffer _pendingRecords;
+	private ArrayList<String> _pendingNewWords;
+	private int _numOfRecordsInJournal;
+	private long _generation;
+
+	private FileChannel _journalChannel;
+	private final Object _flushLock = new Object();
+	private boolean _closed;
+
+	AttemptJournal(QuizCategory category) {
+		_category = category;
+		_wordIdsFilePath = category._categoryWordIdsFilePath;
+		_journalFilePath = category._categoryJournalFilePath;
+		_snapshotFilePath = category._categorySnapshotFilePath;
+
+		_counters = new WordStatsCounters();
+		_pendingRecords = ByteBuffer.allocate(RECORD_SIZE * 64);
+		_pendingNewWords = new ArrayList<String>();
+
+		try {
+			Files.createDirectories(_category._categoryFolder);
+			if (Files.notExists(_snapshotFilePath) && Files.notExists(_journalFilePath)) {
+				migrateLegacyStatsFiles();
+			}
+			load();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Records an attempt at spelling the word. The record is written to disk on the next flush().
+	 */
+	synchronized void recordAttempt(String word, WordMastery outcome, int attemptNumber) {
+		int wordId = getOrCreateWordId(word);
+		_counters.increment(wordId, outcome);
+		appendPendingRecord(wordId, (byte) outcome.ordinal(), System.currentTimeMillis(), attemptNumber);
+	}
+
+	/**
+	 * Clears all previous attempts of the word.
+	 */
+	synchronized void clearWord(String word) {
+		int wordId = _counters.getWordId(word);
+		if (wordId < 0) {
+			return;
+		}
+		_counters.clear(wordId);
+		appendPendingRecord(wordId, OUTCOME_CLEARED, System.currentTimeMillis(), 0);
+	}
+
+	/**
+	 * Returns a copy of the per-word counters, up to date with every recorded attempt.
+	 */
+	synchronized WordStatsCounters getCounters() {
+		return _counters.copy();
+	}
+
+	synchronized boolean hasPendingRecords() {
+		return _pendingRecords.position() > 0 || !_pendingNewWords.isEmpty();
+	}
+
+	/**
+	 * Group commit: writes all buffered records to the journal with a single write and a single force.
+	 * If the journal has grown past the compaction threshold, it is compacted into a new snapshot instead.
+	 * If anything cannot be written, whatever was written of it is undone and the records and new word ids are put back
+	 * at the front of the pending buffers, to be written again by the next flush.
+	 */
+	void flush() {
+		synchronized (_flushLock) {
+			if (_closed) {
+				return;
+			}
+
+			byte[] records;
+			ArrayList<String> newWords;
+			WordStatsCounters countsToSnapshot = null;
+			synchronized (this) {
+				if (!hasPendingRecords()) {
+					return;
+				}
+				_pendingRecords.flip();
+				records = new byte[_pendingRecords.remaining()];
+				_pendingRecords.get(records);
+				_pendingRecords.clear();
+				newWords = new ArrayList<String>(_pendingNewWords);
+				_pendingNewWords.clear();
+
+				if (_numOfRecordsInJournal + records.length / RECORD_SIZE >= COMPACTION_THRESHOLD) {
+					//The counters include exactly the journal plus the records just taken, so they can replace both
+					countsToSnapshot = _counters.copy();
+				}
+			}
+
+			//Word ids must reach the disk before any record refers to them
+			try {
+				appendWordIds(newWords);
+			} catch (IOException e) {
+				e.printStackTrace();
+				putBackPending(records, newWords);
+				return;
+			}
+
+			try {
+				if (countsToSnapshot != null) {
+					compact(countsToSnapshot);
+				} else {
+					writeRecords(records);
+				}
+			} catch (IOException e) {
+				//The record count is left as it was, so a failed compaction is tried again (and includes these records) on the next flush
+				e.printStackTrace();
+				putBackPending(records, new ArrayList<String>());
+				return;
+			}
+
+			synchronized (this) {
+				if (countsToSnapshot != null) {
+					_numOfRecordsInJournal = 0;
+				} else {
+					_numOfRecordsInJournal += records.length / RECORD_SIZE;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Puts records and new word ids that could not be written back in front of any that have been added since they were taken.
+	 */
+	private synchronized void putBackPending(byte[] records, ArrayList<String> newWords) {
+		_pendingRecords.flip();
+		ByteBuffer pendingRecords = ByteBuffer.allocate(Math.max(_pendingRecords.capacity(), records.length + _pendingRecords.remaining() + RECORD_SIZE));
+		pendingRecords.put(records);
+		pendingRecords.put(_pendingRecords);
+		_pendingRecords = pendingRecords;
+
+		_pendingNewWords.addAll(0, newWords);
+	}
+
+	/**
+	 * Appends the words to the WordIds file. If that fails part way through, the file is cut back to how it was,
+	 * so that the line number of every word in the file stays the same as its id.
+	 */
+	private void appendWordIds(List<String> newWords) throws IOException {
+		if (newWords.isEmpty()) {
+			return;
+		}
+		long sizeBefore = Files.exists(_wordIdsFilePath) ? Files.size(_wordIdsFilePath) : 0;
+		try {
+			Files.write(_wordIdsFilePath, newWords, StandardCharsets.ISO_8859_1, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+		} catch (IOException e) {
+			try (FileChannel wordIdsChannel = FileChannel.open(_wordIdsFilePath, StandardOpenOption.WRITE)) {
+				wordIdsChannel.truncate(sizeBefore);
+			} catch (IOException truncateException) {
+				truncateException.printStackTrace();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Appends the records to the journal and forces them to disk. If that fails part way through, the journal is cut back to how it was,
+	 * so that the records are not replayed twice once they are written again.
+	 */
+	private void writeRecords(byte[] records) throws IOException {
+		long positionBefore = _journalChannel.position();
+		try {
+			ByteBuffer buffer = ByteBuffer.wrap(records);
+			while (buffer.hasRemaining()) {
+				_journalChannel.write(buffer);
+			}
+			_journalChannel.force(false);
+		} catch (IOException e) {
+			try {
+				_journalChannel.truncate(positionBefore);
+				_journalChannel.position(positionBefore);
+			} catch (IOException truncateException) {
+				truncateException.printStackTrace();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Clears every attempt in the category: the snapshot and the journal are replaced with empty ones.
+	 * The word ids are kept.
+	 * The attempts are only dropped from memory once the empty snapshot has been moved into place,
+	 * so if it cannot be written, nothing is cleared and no attempts are lost.
+	 */
+	void clearAll() {
+		synchronized (_flushLock) {
+			if (_closed) {
+				return;
+			}
+			ArrayList<String> newWords;
+			WordStatsCounters emptyCounts;
+			int numOfClearedBytes; //the pending records made before the clear. Any made while the snapshot is written are kept.
+			synchronized (this) {
+				newWords = new ArrayList<String>(_pendingNewWords);
+				_pendingNewWords.clear();
+				emptyCounts = _counters.copy();
+				emptyCounts.clearAll();
+				numOfClearedBytes = _pendingRecords.position();
+			}
+			try {
+				appendWordIds(newWords);
+			} catch (IOException e) {
+				e.printStackTrace();
+				putBackPending(new byte[0], newWords);
+				return;
+			}
+
+			long newGeneration = _generation + 1;
+			try {
+				writeSnapshot(emptyCounts, newGeneration);
+			} catch (IOException e) {
+				e.printStackTrace();
+				return;
+			}
+			//The empty snapshot is newer than the journal, so from here on the attempts stay cleared even if the journal cannot be reset
+			dropClearedAttempts(numOfClearedBytes);
+			try {
+				resetJournal(newGeneration);
+				_generation = newGeneration;
+			} catch (IOException e) {
+				//The old journal would be discarded on the next start, along with any records written to it, so compact on the next flush instead
+				e.printStackTrace();
+				synchronized (this) {
+					_numOfRecordsInJournal = COMPACTION_THRESHOLD;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Drops the first bytes of the pending records, and rebuilds the counters from the pending records that are left
+	 */
+	private synchronized void dropClearedAttempts(int numOfClearedBytes) {
+		_pendingRecords.flip();
+		_pendingRecords.position(numOfClearedBytes);
+		_pendingRecords.compact();
+		_numOfRecordsInJournal = 0;
+
+		_counters.clearAll();
+		ByteBuffer recordsLeft = _pendingRecords.duplicate();
+		recordsLeft.flip();
+		applyRecords(recordsLeft);
+	}
+
+	/**
+	 * Closes the journal's file channel. Pending records are dropped; call flush() first to keep them.
+	 */
+	void close() {
+		synchronized (_flushLock) {
+			_closed = true;
+			try {
+				if (_journalChannel != null) {
+					_journalChannel.close();
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	private int getOrCreateWordId(String word) {
+		int numOfWordsBefore = _counters.getNumOfWords();
+		int wordId = _counters.internWord(word);
+		if (wordId == numOfWordsBefore) { //newly interned word, so its id still has to be written to disk
+			_pendingNewWords.add(word);
+		}
+		return wordId;
+	}
+
+	private void appendPendingRecord(int wordId, byte outcome, long timestamp, int attemptNumber) {
+		if (_pendingRecords.remaining() < RECORD_SIZE) {
+			ByteBuffer biggerBuffer = ByteBuffer.allocate(_pendingRecords.capacity() * 2);
+			_pendingRecords.flip();
+			biggerBuffer.put(_pendingRecords);
+			_pendingRecords = biggerBuffer;
+		}
+		_pendingRecords.putInt(wordId);
+		_pendingRecords.put(outcome);
+		_pendingRecords.putLong(timestamp);
+		_pendingRecords.putInt(attemptNumber);
+	}
+
+	/**
+	 * Writes the given counters as the new snapshot (with the next generation number) and starts an empty journal of that generation.
+	 * Must be called while holding the flush lock.
+	 */
+	private void compact(WordStatsCounters counts) throws IOException {
+		long newGeneration = _generation + 1;
+		writeSnapshot(counts, newGeneration);
+		resetJournal(newGeneration);
+		_generation = newGeneration;
+	}
+
+	private void writeSnapshot(WordStatsCounters counts, long generation) throws IOException {
+		Path tempSnapshotFilePath = _snapshotFilePath.resolveSibling(_snapshotFilePath.getFileName() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempSnapshotFilePath)))) {
+			out.writeInt(SNAPSHOT_MAGIC);
+			out.writeLong(generation);
+			int numOfWordsWithCounts = 0;
+			for (int wordId = 0; wordId < counts.getNumOfWords(); wordId++) {
+				if (counts.hasAnyCounts(wordId)) {
+					numOfWordsWithCounts++;
+				}
+			}
+			out.writeInt(numOfWordsWithCounts);
+			for (int wordId = 0; wordId < counts.getNumOfWords(); wordId++) {
+				if (counts.hasAnyCounts(wordId)) {
+					out.writeInt(wordId);
+					out.writeInt(counts.getCount(wordId, WordMastery.MASTERED));
+					out.writeInt(counts.getCount(wordId, WordMastery.FAULTED));
+					out.writeInt(counts.getCount(wordId, WordMastery.FAILED));
+				}
+			}
+		}
+		Files.move(tempSnapshotFilePath, _snapshotFilePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private void resetJournal(long generation) throws IOException {
+		if (_journalChannel == null || !_journalChannel.isOpen()) {
+			_journalChannel = FileChannel.open(_journalFilePath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		}
+		_journalChannel.truncate(0);
+		ByteBuffer header = ByteBuffer.allocate(JOURNAL_HEADER_SIZE);
+		header.putInt(JOURNAL_MAGIC);
+		header.putLong(generation);
+		header.flip();
+		while (header.hasRemaining()) {
+			_journalChannel.write(header, JOURNAL_HEADER_SIZE - header.remaining());
+		}
+		_journalChannel.position(JOURNAL_HEADER_SIZE);
+		_journalChannel.force(true);
+	}
+
+	/**
+	 * Loads the word ids, the snapshot and then replays the journal on top of the snapshot.
+	 */
+	private void load() throws IOException {
+		if (Files.exists(_wordIdsFilePath)) {
+			//Words are only ever appended once, so interning them in file order gives every word its line number as its id
+			for (String word : Files.readAllLines(_wordIdsFilePath, StandardCharsets.ISO_8859_1)) {
+				_counters.internWord(word);
+			}
+		}
+
+		long snapshotGeneration = 0;
+		if (Files.exists(_snapshotFilePath)) {
+			try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(_snapshotFilePath)))) {
+				if (in.readInt() == SNAPSHOT_MAGIC) {
+					snapshotGeneration = in.readLong();
+					int numOfWordsWithCounts = in.readInt();
+					for (int i = 0; i < numOfWordsWithCounts; i++) {
+						int wordId = in.readInt();
+						int mastered = in.readInt();
+						int faulted = in.readInt();
+						int failed = in.readInt();
+						if (wordId >= 0 && wordId < _counters.getNumOfWords()) {
+							_counters.setCounts(wordId, mastered, faulted, failed);
+						}
+					}
+				}
+			} catch (IOException e) {
+				e.printStackTrace(); //keep the counters read before the snapshot was found to be damaged
+			}
+		}
+		_generation = snapshotGeneration;
+
+		_journalChannel = FileChannel.open(_journalFilePath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		ByteBuffer header = ByteBuffer.allocate(JOURNAL_HEADER_SIZE);
+		if (_journalChannel.size() >= JOURNAL_HEADER_SIZE) {
+			_journalChannel.read(header, 0);
+			header.flip();
+		}
+		long journalGeneration = (header.getInt() == JOURNAL_MAGIC) ? header.getLong() : -1;
+		if (journalGeneration < snapshotGeneration) {
+			//Missing or unreadable journal, or a journal that has already been compacted into the snapshot
+			resetJournal(snapshotGeneration);
+			return;
+		}
+		_generation = journalGeneration;
+
+		//Replay whole records only. A torn record at the end (from a crash mid-write) is dropped.
+		long journalSize = _journalChannel.size();
+		int numOfRecords = (int) ((journalSize - JOURNAL_HEADER_SIZE) / RECORD_SIZE);
+		ByteBuffer records = ByteBuffer.allocate(numOfRecords * RECORD_SIZE);
+		while (records.hasRemaining()) {
+			if (_journalChannel.read(records, JOURNAL_HEADER_SIZE + records.position()) < 0) {
+				break;
+			}
+		}
+		records.flip();
+		applyRecords(records);
+		_numOfRecordsInJournal = numOfRecords;
+
+		long endOfRecords = JOURNAL_HEADER_SIZE + (long) numOfRecords * RECORD_SIZE;
+		if (journalSize > endOfRecords) {
+			_journalChannel.truncate(endOfRecords);
+		}
+		_journalChannel.position(endOfRecords);
+	}
+
+	/**
+	 * Applies the whole records in the buffer to the counters, skipping any with an unknown word id
+	 */
+	private void applyRecords(ByteBuffer records) {
+		while (records.remaining() >= RECORD_SIZE) {
+			int wordId = records.getInt();
+			byte outcome = records.get();
+			records.getLong(); //timestamp
+			records.getInt(); //attempt number
+			if (wordId < 0 || wordId >= _counters.getNumOfWords()) {
+				continue;
+			}
+			if (outcome == OUTCOME_CLEARED) {
+				_counters.clear(wordId);
+			} else if (outcome >= 0 && outcome < WordMastery.values().length) {
+				_counters.increment(wordId, WordMastery.values()[outcome]);
+			}
+		}
+	}
+
+	/**
+	 * One-time migration: counts the words in the legacy Mastered/Faulted/Failed text files of the category,
+	 * writes the counts as the first snapshot, and deletes the legacy files.
+	 */
+	private void migrateLegacyStatsFiles() throws IOException {
+		boolean hasLegacyFiles = false;
+		for (int i = 0; i < _category._categoryStatsFilePaths.size(); i++) {
+			Path statsFilePath = _category._categoryStatsFilePaths.get(i);
+			if (Files.notExists(statsFilePath)) {
+				continue;
+			}
+			hasLegacyFiles = true;
+			for (String word : Files.readAllLines(statsFilePath, StandardCharsets.ISO_8859_1)) {
+				if (word.length() == 0) {
+					continue;
+				}
+				int wordId = getOrCreateWordId(word);
+				_counters.increment(wordId, WordMastery.values()[i]);
+			}
+		}
+		if (!hasLegacyFiles) {
+			return;
+		}
+
+		Files.write(_wordIdsFilePath, _pendingNewWords, StandardCharsets.ISO_8859_1, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		writeSnapshot(_counters, 1);
+
+		for (Path statsFilePath : _category._categoryStatsFilePaths) {
+			Files.deleteIfExists(statsFilePath);
+		}
+
+		//load() reads everything back from the files just written
+		_counters = new WordStatsCounters();
+		_pendingNewWords.clear();
+	}
+}
@@ -1,17 +1,23 @@
 package voxspell.newquiz;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A Singleton class that manages reading/writing actions to the hidden files
  * necessary for a new quiz and for statistics when running the VoxSpellApp.
+ * The level of every word is kept in an in-memory WordLevelIndex per category, which is loaded once from the Level files.
+ * Changes to the levels are written back to the Level files in the background (write-behind), in batches.
+ * Every attempt at spelling a word is recorded in an append-only AttemptJournal per category, which is written in the same batches.
  * Declaration: most of the code in this class is derived from my assignment 3.
  * @author echa232
  */
@@ -48,7 +54,10 @@ public class HiddenQuizFilesModel {
 
 		public Path _categoryFolder;
 		public ArrayList<Path> _categoryLevelFilePaths;
-		public ArrayList<Path> _categoryStatsFilePaths;
+		public ArrayList<Path> _categoryStatsFilePaths; //legacy Mastered/Faulted/Failed files, only read when migrating to the attempt journal
+		public Path _categoryWordIdsFilePath;
+		public Path _categoryJournalFilePath;
+		public Path _categorySnapshotFilePath;
 
 		private QuizCategory(String categoryName) {
 			//Initialise fields
@@ -72,13 +81,45 @@ public class HiddenQuizFilesModel {
 				pathName = "./.quiz/" + categoryName + "/" + statsLevels[i].toString();
 				_categoryStatsFilePaths.add(Paths.get(pathName));
 			}
+
+			//create category's files for the attempt journal
+			_categoryWordIdsFilePath = Paths.get("./.quiz/" + categoryName + "/WordIds");
+			_categoryJournalFilePath = Paths.get("./.quiz/" + categoryName + "/Attempts.journal");
+			_categorySnapshotFilePath = Paths.get("./.quiz/" + categoryName + "/Attempts.snapshot");
 		}
 	}
 
 	private static HiddenQuizFilesModel _hiddenQuizFilesModel;
 
+	//How long changes to the word levels are batched up before they are written to the Level files
+	private static final long WRITE_BEHIND_DELAY_MILLIS = 500;
+
+	private EnumMap<QuizCategory, WordLevelIndex> _wordLevelIndexes;
+	private EnumMap<QuizCategory, AttemptJournal> _attemptJournals;
+	private ScheduledExecutorService _writeBehindExecutor;
+	private boolean _flushScheduled;
+	private long[] _categoryVersions; //incremented every time the words or stats of a category change
+
 	private HiddenQuizFilesModel()
 	{
+		_wordLevelIndexes = new EnumMap<QuizCategory, WordLevelIndex>(QuizCategory.class);
+		_attemptJournals = new EnumMap<QuizCategory, AttemptJournal>(QuizCategory.class);
+		_categoryVersions = new long[QuizCategory.values().length];
+		_writeBehindExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "HiddenQuizFilesModel write-behind");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		//Make sure no changes are lost when the application is closed before the next batch is written
+		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+			@Override
+			public void run() {
+				flushPendingWrites();
+			}
+		}));
 		setUpHiddenFiles();
 	}
 
@@ -101,14 +142,14 @@ public class HiddenQuizFilesModel {
 		 * Create quiz folder and files
 		 * First there is the quiz folder.
 		 * Then in the quiz folder, there are 4 folders: adjectives, adverbs, verbs and nouns
-		 * In each of those 4 folders, there are 8 files: levels 1 to 5, and mastered/faulted/failed
+		 * In each of those 4 folders, there are the files for levels 1 to 5, and the files of the attempt journal
 		 * The level files are used to compile the word list according to the category and the user's familiarity (rated level 1 to 5) with the words
-		 * The mastered/fauled/failed files are used for statistical purposes
+		 * The attempt journal files are used for statistical purposes (they are created by the AttemptJournal itself)
 		 */
 		try {
 			/*
 			 * For each category, create the files for all the file paths in
-			 * the category's categoryLevelFilePaths and categoryStatsFilePaths 
+			 * the category's categoryLevelFilePaths
 			 */
 			for (QuizCategory category : QuizCategory.values()) {
 				//Create the parent directories first to prevent IO exception being thrown
@@ -121,13 +162,6 @@ public class HiddenQuizFilesModel {
 						Files.createFile(filePath);
 					}
 				}
-
-				for (int i = 0; i < category._categoryStatsFilePaths.size(); i++) {
-					Path filePath = category._categoryStatsFilePaths.get(i);
-					if (Files.notExists(filePath)) {
-						Files.createFile(filePath);
-					}
-				}
 			}
 		} catch (IOException e) {
 			e.printStackTrace();
@@ -138,176 +172,190 @@ public class HiddenQuizFilesModel {
 	 * Given a category, this method returns a 2D array.
 	 * The 2D array contains a list of lists of quiz words of the category.
 	 * The position of the list of quiz words in the list corresponds to the user's level of familiarity with the quiz words
+	 * The words are served from the category's in-memory index rather than re-read from the Level files.
 	 * 
 	 * Declaration: code reused from assignment 3
 	 */
 	public ArrayList<List<String>> readCategoryLevelFilesWordsIntoArray(QuizCategory category) {		
-		//Instantiate the 2D array
-		ArrayList<List<String>> allWordsInCategory = new ArrayList<List<String>>();
-
-		//Given the category, read the level files into the array
-		ArrayList<Path> categoryLevelFilePaths = null;
-		try {
-			switch (category) {
-			case Adjectives:
-				categoryLevelFilePaths = QuizCategory.Adjectives._categoryLevelFilePaths;
-				break;
-			case Adverbs:
-				categoryLevelFilePaths = QuizCategory.Adverbs._categoryLevelFilePaths;
-				break;
-			case Nouns:
-				categoryLevelFilePaths = QuizCategory.Nouns._categoryLevelFilePaths;
-				break;
-			case Verbs:
-				categoryLevelFilePaths = QuizCategory.Verbs._categoryLevelFilePaths;
-				break;
-			}
+		return getWordLevelIndex(category).getWordsByLevel();
+	}
 
-			for (int i = 0; i < categoryLevelFilePaths.size(); i++) {
-				List<String> wordsAtLevel = Files.readAllLines(categoryLevelFilePaths.get(i), StandardCharsets.ISO_8859_1);
-				allWordsInCategory.add(wordsAtLevel);
-			}
+	/**
+	 * Returns true if the word is in the category, at any level
+	 */
+	public boolean isWordInCategory(QuizCategory category, String word) {
+		return getWordLevelIndex(category).containsWord(word);
+	}
 
-		} catch (IOException e) {
-			e.printStackTrace();
+	/**
+	 * Returns the in-memory word level index of the category, loading it from the Level files the first time it is needed.
+	 */
+	private synchronized WordLevelIndex getWordLevelIndex(QuizCategory category) {
+		WordLevelIndex index = _wordLevelIndexes.get(category);
+		if (index == null) {
+			index = new WordLevelIndex(category);
+			_wordLevelIndexes.put(category, index);
 		}
+		return index;
+	}
 
-		return allWordsInCategory;
+	/**
+	 * Returns the attempt journal of the category, opening it (and migrating the legacy stats files) the first time it is needed.
+	 */
+	private synchronized AttemptJournal getAttemptJournal(QuizCategory category) {
+		AttemptJournal journal = _attemptJournals.get(category);
+		if (journal == null) {
+			journal = new AttemptJournal(category);
+			_attemptJournals.put(category, journal);
+		}
+		return journal;
 	}
 
-	public ArrayList<List<String>> readCategoryStatsFilesWordsIntoArray(QuizCategory category) {
-		//Instantiate the 2D array
-		ArrayList<List<String>> allWordsInCategory = new ArrayList<List<String>>();
+	/**
+	 * Returns a number that changes every time the words, levels or stats of the category change.
+	 * Useful for knowing whether something computed from the category's files (e.g. a scoreboard) is out of date.
+	 */
+	public synchronized long getCategoryVersion(QuizCategory category) {
+		return _categoryVersions[category.ordinal()];
+	}
 
-		//Given the category, read the level files into the array
-		ArrayList<Path> categoryStatsFilePaths = null;
-		try {
-			switch (category) {
-			case Adjectives:
-				categoryStatsFilePaths = QuizCategory.Adjectives._categoryStatsFilePaths;
-				break;
-			case Adverbs:
-				categoryStatsFilePaths = QuizCategory.Adverbs._categoryStatsFilePaths;
-				break;
-			case Nouns:
-				categoryStatsFilePaths = QuizCategory.Nouns._categoryStatsFilePaths;
-				break;
-			case Verbs:
-				categoryStatsFilePaths = QuizCategory.Verbs._categoryStatsFilePaths;
-				break;
-			}
+	/**
+	 * Called after every change to a category: bumps the category's version and schedules the change to be written to disk.
+	 */
+	private void categoryChanged(QuizCategory category) {
+		synchronized (this) {
+			_categoryVersions[category.ordinal()]++;
+		}
+		scheduleFlush();
+	}
 
-			for (int i = 0; i < categoryStatsFilePaths.size(); i++) {
-				List<String> wordsAtStats = Files.readAllLines(categoryStatsFilePaths.get(i), StandardCharsets.ISO_8859_1);
-				allWordsInCategory.add(wordsAtStats);
+	/**
+	 * Schedules the changed word levels and recorded attempts to be written to disk in the background.
+	 * Changes made before the scheduled write happens are batched into the same write.
+	 */
+	private synchronized void scheduleFlush() {
+		if (_flushScheduled) {
+			return;
+		}
+		_flushScheduled = true;
+		_writeBehindExecutor.schedule(new Runnable() {
+			@Override
+			public void run() {
+				synchronized (HiddenQuizFilesModel.this) {
+					_flushScheduled = false;
+				}
+				flushPendingWrites();
 			}
+		}, WRITE_BEHIND_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+	}
 
-		} catch (IOException e) {
-			e.printStackTrace();
+	/**
+	 * Writes all pending changes of the word levels and recorded attempts to disk straight away, on the calling thread.
+	 */
+	public void flushPendingWrites() {
+		ArrayList<WordLevelIndex> indexes;
+		ArrayList<AttemptJournal> journals;
+		synchronized (this) {
+			indexes = new ArrayList<WordLevelIndex>(_wordLevelIndexes.values());
+			journals = new ArrayList<AttemptJournal>(_attemptJournals.values());
+		}
+		for (WordLevelIndex index : indexes) {
+			index.flush();
+		}
+		for (AttemptJournal journal : journals) {
+			journal.flush();
 		}
-
-		return allWordsInCategory;
 	}
 
 	/**
-	 * Given a word, append it as a new line in the specified stats file
+	 * Deletes all of the category's hidden files and its folder, dropping any changes that have not been written yet.
+	 * The category's index is reloaded from disk the next time it is needed.
 	 */
-	protected void addWordToStatsFile(QuizCategory category, WordMastery statsFile, String word) {
-		String wordOnNewLine = word + "\n";
+	public void deleteCategoryFiles(QuizCategory category) {
+		WordLevelIndex index;
+		AttemptJournal journal;
+		synchronized (this) {
+			index = _wordLevelIndexes.remove(category);
+			journal = _attemptJournals.remove(category);
+			_categoryVersions[category.ordinal()]++;
+		}
+		if (index != null) {
+			index.discard();
+		}
+		if (journal != null) {
+			journal.close();
+		}
+
 		try {
-			switch (statsFile) {
-			case MASTERED:
-				Files.write(category._categoryStatsFilePaths.get(0), wordOnNewLine.getBytes(), StandardOpenOption.APPEND);
-				break;
-			case FAULTED:
-				Files.write(category._categoryStatsFilePaths.get(1), wordOnNewLine.getBytes(), StandardOpenOption.APPEND);
-				break;
-			case FAILED:
-				Files.write(category._categoryStatsFilePaths.get(2), wordOnNewLine.getBytes(), StandardOpenOption.APPEND);
-				break;
+			for (Path p : category._categoryLevelFilePaths) {
+				Files.deleteIfExists(p);
+			} 
+
+			for (Path p : category._categoryStatsFilePaths) {
+				Files.deleteIfExists(p);
 			}
+
+			Files.deleteIfExists(category._categoryWordIdsFilePath);
+			Files.deleteIfExists(category._categoryJournalFilePath);
+			Files.deleteIfExists(category._categorySnapshotFilePath);
+
+			Files.deleteIfExists(category._categoryFolder);
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
 	}
 
+	/**
+	 * Given a category, returns the number of times each word has been mastered, faulted and failed.
+	 * The counters are maintained as attempts are recorded, so this does not read through the attempt history.
+	 * The returned table is a copy and is not updated by later attempts.
+	 */
+	public WordStatsCounters readCategoryStatsCounters(QuizCategory category) {
+		return getAttemptJournal(category).getCounters();
+	}
+
+	/**
+	 * Given a word, record it in the category's attempt journal with the given outcome and attempt number.
+	 * The record is written to disk in the background, together with any other changes made in the meantime.
+	 */
+	protected void addWordToStatsFile(QuizCategory category, WordMastery statsFile, String word, int attemptNumber) {
+		getAttemptJournal(category).recordAttempt(word, statsFile, attemptNumber);
+		categoryChanged(category);
+	}
+
+	/**
+	 * Puts the word at the given level of the category.
+	 * The Level files are updated in the background shortly afterwards.
+	 */
 	public void addWordToLevelFile(QuizCategory category, CategoryLevel level, String word) {
-		try {
-			String wordOnNewLine = word + "\n";
-			Path levelFilePath = category._categoryLevelFilePaths.get(level._value - 1);
-			Files.write(levelFilePath, wordOnNewLine.getBytes(), StandardOpenOption.APPEND);
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
+		getWordLevelIndex(category).putWord(word, level);
+		categoryChanged(category);
 	}
 
 	public void removeWordFromLevelFile(QuizCategory category, CategoryLevel level, String word) {
-
-		Path levelFilePath = category._categoryLevelFilePaths.get(level._value - 1); //which Level file in category to remove the word from
-		removeWordFromFile(word, levelFilePath);
-		
+		if (getWordLevelIndex(category).removeWord(word, level)) {
+			categoryChanged(category);
+		}
 	}
 	
 	/**
-	 * Removes all occurrences of the given word from all stats files in the given category
+	 * Removes all attempts of the given word from the category's statistics
 	 */
 	public void removeWordFromAllStatsFile(QuizCategory category, String word) {
-		
-		for (int i = 0; i < category._categoryStatsFilePaths.size(); i++) {
-			Path statsFilePath = category._categoryStatsFilePaths.get(i);
-			removeWordFromFile(word, statsFilePath);						
-		}
-	}
-	
-	private void removeWordFromFile(String word, Path filePath) {
-		try {
-			List<String> wordsInFile = Files.readAllLines(filePath, StandardCharsets.ISO_8859_1);//First read in all words from file
-			List<String> tempList = new ArrayList<String>();
-			tempList.add(word); 
-			wordsInFile.removeAll(tempList);//Then remove all occurrences of the given word
-			
-			//Recreate a blank file in the same path as the file and rewrite words into the blank file.
-			Files.delete(filePath);
-			Files.createFile(filePath);
-			Files.write(filePath, wordsInFile, StandardCharsets.ISO_8859_1, StandardOpenOption.APPEND);
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
+		getAttemptJournal(category).clearWord(word);
+		categoryChanged(category);
 	}
 
 	/**
 	 * Reset stats in category and assumes user's familiarity with all words in the category reverts back to level 1. 
 	 */
 	public void reset(QuizCategory category) {
-		try {
-
-			//Reset stats: 
-			//delete mastered/faulted/failed files in category and recreate them as blank files
-			//Reset quiz words in category: 
-			//first read all the words in all 5 levels and store in a variable
-			//Then, delete the 5 level files and the folder and recreate them as blank files. 
-			//Finally rewrite the words into the level 1 file of the category
-			ArrayList<List<String>> allWordsInCategory = readCategoryLevelFilesWordsIntoArray(category);
+		//Reset stats: clear every attempt recorded in the category's journal
+		getAttemptJournal(category).clearAll();
 
-			for (int i = 0; i < category._categoryStatsFilePaths.size(); i++) {
-				Files.deleteIfExists(category._categoryStatsFilePaths.get(i));
-			} 
-
-			for (int i = 0; i < category._categoryLevelFilePaths.size(); i++) {
-				Files.deleteIfExists(category._categoryLevelFilePaths.get(i));
-			}
-
-			setUpHiddenFiles();
-
-			for (int i = 0; i < allWordsInCategory.size(); i++) {
-				for (int j = 0; j < allWordsInCategory.get(i).size(); j++) {
-					addWordToLevelFile(category, CategoryLevel.ONE, allWordsInCategory.get(i).get(j));
-				}
-			}
-
-		} catch (IOException e) {
-			e.printStackTrace();
-		}		
+		//Reset quiz words in category: move all words of the category into level 1
+		getWordLevelIndex(category).moveAllWordsToLevelOne();
+		categoryChanged(category);
 	}
 
 	/**
@@ -315,15 +363,11 @@ public class HiddenQuizFilesModel {
 	 * First it looks for which level the word is in, and then moves the word according to the direction
 	 */
 	void shiftWordByALevel(QuizCategory category, LevelShiftDirection direction, String word) {		
-		//Look for which level the word is in
-		ArrayList<List<String>> allWordsInCategory = readCategoryLevelFilesWordsIntoArray(category);
-		CategoryLevel currentLevelOfWord = null;
-		for (int i = 0; i < allWordsInCategory.size(); i++) {
-			List<String> currentListBeingExamined = allWordsInCategory.get(i);
-			if (currentListBeingExamined.contains(word)) { //Assumption: once the word has been found at the current list being examined, the word is assumed to be non-existent at higher levels
-				currentLevelOfWord = CategoryLevel.getCategoryLevelGivenInt(i+1);
-				break;
-			}
+		//Look up which level the word is in
+		WordLevelIndex index = getWordLevelIndex(category);
+		CategoryLevel currentLevelOfWord = index.getLevelOfWord(word);
+		if (currentLevelOfWord == null) { //word is no longer in the word list (e.g. it was removed while the quiz was running)
+			return;
 		}
 
 		//Check if current level of word is at the lowest/highest level possible with the desired direction of shift
@@ -346,11 +390,9 @@ public class HiddenQuizFilesModel {
 			break;
 		}
 
-		//remove word at current level
-		removeWordFromLevelFile(category, currentLevelOfWord, word);
-
-		//add word at new level
-		addWordToLevelFile(category, newLevelOfWord, word);
+		//move word from its current level to the new level
+		index.putWord(word, newLevelOfWord);
+		categoryChanged(category);
 	}
 
-}
\ No newline at end of file
+}
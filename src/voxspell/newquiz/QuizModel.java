@@ -367,9 +367,15 @@ public class QuizModel {
 	 */
 	private void spellWordsPrompt() {
 		_currentWordCount++;
+		//Any speech about the previous word is no longer needed
+		_speechAndSoundModel.cancelSpeech();
 		if (_currentWordCount <= 10) { //while there are still more words to spell
 			_currentWord = _gameWords.get(_currentWordCount-1);
 			_speechAndSoundModel.speakCurrentWord(_currentWord);
+
+			//While the user is spelling this word, get the speeches that may be needed next ready
+			String nextWord = (_currentWordCount < 10) ? _gameWords.get(_currentWordCount) : null;
+			_speechAndSoundModel.prefetchSpeech(_currentWord, nextWord);
 			fire(QuizModelEvent.EventType.NewWordInQuiz);
 		}
 		else {
@@ -384,11 +390,11 @@ public class QuizModel {
 	}
 
 	/**
-	 * Depending on whether the user mastered/faulted/failed spelling of word, store in the appropriate file.
+	 * Depending on whether the user mastered/faulted/failed spelling of word, record it in the category's attempt journal.
 	 * @param masteryLevel
 	 */
 	private void storeWordInStatsFile(WordMastery masteryLevel) {
-		_filesModel.addWordToStatsFile(_category, masteryLevel, _currentWord);
+		_filesModel.addWordToStatsFile(_category, masteryLevel, _currentWord, _attemptsCount);
 	}
 
 	/**
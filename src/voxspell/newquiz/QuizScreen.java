@@ -15,6 +15,7 @@ import java.util.ArrayList;
 import javax.imageio.ImageIO;
 import javax.swing.ImageIcon;
 import javax.swing.JButton;
+import javax.swing.JCheckBox;
 import javax.swing.JComboBox;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
@@ -31,6 +32,8 @@ import voxspell.newquiz.HiddenQuizFilesModel.QuizCategory;
 import voxspell.sounds.SpeechAndSoundModel;
 import voxspell.sounds.SpeechAndSoundModel.Voice;
 import voxspell.videoplayer.VideoPlayer;
+import voxspell.videoplayer.VideoPlayer.EncodingProfile;
+import voxspell.videoplayer.VideoPlayer.PlaybackMode;
 
 /**
  * This class represents the screen object that is shown when the user wants to play a new spelling quiz
@@ -50,6 +53,8 @@ public class QuizScreen extends Screen implements QuizModelListener {
 	private QuizModel _quizModel;
 	private SpeechAndSoundModel _speechAndSoundModel;
 
+	private VideoPlayer _reviewVideo; //The review video of the current quiz, rendered in the background while the quiz is played
+
 	JButton _btnCheckSpelling;
 	JButton _btnRelistenToWord;
 	JButton _btnReturn;
@@ -315,6 +320,8 @@ public class QuizScreen extends Screen implements QuizModelListener {
 		_btnReturn.addActionListener(new ActionListener() {
 			@Override
 			public void actionPerformed(ActionEvent e) {
+				//The quiz is abandoned, so its review video will not be needed
+				cancelReviewVideo();
 				returnToScreenOwnerMainScreen();
 				resetForNextGame();
 			}			
@@ -453,6 +460,16 @@ public class QuizScreen extends Screen implements QuizModelListener {
 		case NewWordInQuiz:
 			_spellWordInputField.setText("");
 			_lblSpellWord.setText("Spell word " + (_quizModel._currentWordCount) + " of 10 : ");
+			if (_quizModel._currentWordCount == 1) {
+				//The words of the review video are known from the start of the quiz, so start rendering it while the quiz is played
+				cancelReviewVideo();
+				_reviewVideo = new VideoPlayer(_quizModel._gameWords);
+				_reviewVideo.prerenderVideo();
+			}
+			if (_reviewVideo != null) {
+				//Encode this word's slide of the review video while the user is spelling it
+				_reviewVideo.prerenderSlide(_quizModel._currentWordCount - 1);
+			}
 			break;
 
 			/*
@@ -475,14 +492,33 @@ public class QuizScreen extends Screen implements QuizModelListener {
 
 			message.append("You spelt " + numOfWordsMasteredInGame + " out of " + numOfWordsQuizzed + " words correctly.\n");
 
-			int option = JOptionPane.showConfirmDialog(null, message + "\nWould you like to play a quiz review video?", 
+			//Lets the user choose a quick slide show, which needs no video to be made, instead of the video
+			JCheckBox slideShowCheckBox = new JCheckBox("Show as a quick slide show instead");
+			slideShowCheckBox.setSelected(VideoPlayer.getPlaybackMode() == PlaybackMode.SLIDESHOW);
+
+			//Lets the user choose the quality of the video. A lower quality is used automatically if this computer is too slow for it.
+			JPanel videoQualityPanel = new JPanel();
+			JComboBox<EncodingProfile> videoQualityComboBox = new JComboBox<EncodingProfile>(EncodingProfile.values());
+			videoQualityComboBox.setSelectedItem(VideoPlayer.getEncodingProfile());
+			videoQualityPanel.add(new JLabel("Video quality:"));
+			videoQualityPanel.add(videoQualityComboBox);
+
+			int option = JOptionPane.showConfirmDialog(null, 
+					new Object[]{message + "\nWould you like to play a quiz review video?", slideShowCheckBox, videoQualityPanel}, 
 					"Game over", JOptionPane.YES_NO_OPTION, JOptionPane.PLAIN_MESSAGE);
 			if (option == JOptionPane.YES_OPTION) {
-				//Plays video. Gives the list of game words to construct the video
-				ArrayList<String> wordsForVideo = _quizModel._gameWords;
-				VideoPlayer mediaPlayer = new VideoPlayer(wordsForVideo);
-				mediaPlayer.playVideo();				
-			}			
+				VideoPlayer.setPlaybackMode(slideShowCheckBox.isSelected() ? PlaybackMode.SLIDESHOW : PlaybackMode.VIDEO);
+				VideoPlayer.setEncodingProfile((EncodingProfile) videoQualityComboBox.getSelectedItem());
+				//Plays video. It has been rendered with the list of game words during the quiz, so is usually ready straight away
+				if (_reviewVideo == null) {
+					_reviewVideo = new VideoPlayer(_quizModel._gameWords);
+				}
+				_reviewVideo.playVideo();
+				_reviewVideo = null;
+			}
+			else {
+				cancelReviewVideo();
+			}
 
 			returnToScreenOwnerMainScreen();
 			resetForNextGame();
@@ -529,6 +565,16 @@ public class QuizScreen extends Screen implements QuizModelListener {
 		}
 	}
 
+	/**
+	 * Stops rendering the review video of the current quiz, if there is one
+	 */
+	private void cancelReviewVideo() {
+		if (_reviewVideo != null) {
+			_reviewVideo.cancelVideo();
+			_reviewVideo = null;
+		}
+	}
+
 	/**
 	 * Resets the necessary GUI components to be ready for a fresh new game next time.
 	 */
@@ -0,0 +1,234 @@
+package voxspell.newquiz;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import voxspell.newquiz.HiddenQuizFilesModel.CategoryLevel;
+import voxspell.newquiz.HiddenQuizFilesModel.QuizCategory;
+
+/**
+ * An in-memory index of which level every word of a single category is at.
+ * The index is loaded once from the category's Level files and is then kept up to date on every change,
+ * so that finding and shifting a word no longer needs to re-read the Level files.
+ * Changes are only written back to the Level files when flush() is called (see HiddenQuizFilesModel for the write-behind scheduling).
+ * Words that are only added to the end of a level are appended to its Level file, rather than the whole Level file being rewritten.
+ * The on-disk layout of the Level files is unchanged: one word per line, in the order the words were added to the level.
+ * @author echa232
+ *
+ */
+class WordLevelIndex {
+
+	private QuizCategory _category;
+
+	//Insertion ordered, so that the order of the words within a level matches the order they were appended to the level file
+	private LinkedHashMap<String, CategoryLevel> _levelsOfWords;
+
+	//Levels whose Level files are out of date with the index, and have to be rewritten
+	private boolean[] _dirtyLevels;
+
+	//Words added to the end of each level since the last flush, for the levels that only need these words appended to their Level files
+	private ArrayList<ArrayList<String>> _appendedWords;
+
+	//Serialises writes to the Level files so that an older snapshot can never overwrite a newer one
+	private final Object _flushLock = new Object();
+	private boolean _discarded;
+
+	WordLevelIndex(QuizCategory category) {
+		_category = category;
+		_levelsOfWords = new LinkedHashMap<String, CategoryLevel>();
+		_dirtyLevels = new boolean[CategoryLevel.values().length];
+		_appendedWords = new ArrayList<ArrayList<String>>();
+		for (int i = 0; i < _dirtyLevels.length; i++) {
+			_appendedWords.add(new ArrayList<String>());
+		}
+		load();
+	}
+
+	/**
+	 * Reads every Level file of the category into the index.
+	 * If a word appears in more than one level, the lowest level is kept (the same assumption that shifting words used to make).
+	 */
+	private void load() {
+		for (CategoryLevel level : CategoryLevel.values()) {
+			Path levelFilePath = _category._categoryLevelFilePaths.get(level._value - 1);
+			if (Files.notExists(levelFilePath)) {
+				continue;
+			}
+			try {
+				List<String> wordsAtLevel = Files.readAllLines(levelFilePath, StandardCharsets.ISO_8859_1);
+				for (String word : wordsAtLevel) {
+					if (word.length() == 0) {
+						continue;
+					}
+					if (!_levelsOfWords.containsKey(word)) {
+						_levelsOfWords.put(word, level);
+					}
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	synchronized CategoryLevel getLevelOfWord(String word) {
+		return _levelsOfWords.get(word);
+	}
+
+	synchronized boolean containsWord(String word) {
+		return _levelsOfWords.containsKey(word);
+	}
+
+	/**
+	 * Puts the word at the given level. If the word was already in the index, it is moved to the end of the new level,
+	 * just like removing it from its old Level file and appending it to the new Level file would.
+	 */
+	synchronized void putWord(String word, CategoryLevel level) {
+		CategoryLevel oldLevel = _levelsOfWords.remove(word);
+		if (oldLevel != null) {
+			markLevelDirty(oldLevel);
+		}
+		_levelsOfWords.put(word, level);
+		if (!_dirtyLevels[level._value - 1]) {
+			_appendedWords.get(level._value - 1).add(word);
+		}
+	}
+
+	/**
+	 * Removes the word from the index, but only if it is at the given level.
+	 * @return true if the word was removed
+	 */
+	synchronized boolean removeWord(String word, CategoryLevel level) {
+		if (_levelsOfWords.get(word) != level) {
+			return false;
+		}
+		_levelsOfWords.remove(word);
+		markLevelDirty(level);
+		return true;
+	}
+
+	/**
+	 * Marks the level's Level file as needing to be rewritten, which also writes any words that were waiting to be appended to it
+	 */
+	private void markLevelDirty(CategoryLevel level) {
+		_dirtyLevels[level._value - 1] = true;
+		_appendedWords.get(level._value - 1).clear();
+	}
+
+	/**
+	 * Moves every word in the category back to level 1.
+	 * Words keep their relative order, with the words that were at lower levels coming first.
+	 */
+	synchronized void moveAllWordsToLevelOne() {
+		ArrayList<List<String>> wordsByLevel = getWordsByLevel();
+		_levelsOfWords.clear();
+		for (List<String> wordsAtLevel : wordsByLevel) {
+			for (String word : wordsAtLevel) {
+				_levelsOfWords.put(word, CategoryLevel.ONE);
+			}
+		}
+		for (CategoryLevel level : CategoryLevel.values()) {
+			markLevelDirty(level);
+		}
+	}
+
+	/**
+	 * Returns the same 2D array that reading the Level files used to return:
+	 * the list at position i contains the words at level i+1, in level file order.
+	 * The lists are copies, so callers may modify them freely.
+	 */
+	synchronized ArrayList<List<String>> getWordsByLevel() {
+		ArrayList<List<String>> wordsByLevel = new ArrayList<List<String>>();
+		for (int i = 0; i < CategoryLevel.values().length; i++) {
+			wordsByLevel.add(new ArrayList<String>());
+		}
+		for (Map.Entry<String, CategoryLevel> entry : _levelsOfWords.entrySet()) {
+			wordsByLevel.get(entry.getValue()._value - 1).add(entry.getKey());
+		}
+		return wordsByLevel;
+	}
+
+	synchronized boolean isDirty() {
+		for (int i = 0; i < _dirtyLevels.length; i++) {
+			if (_dirtyLevels[i] || !_appendedWords.get(i).isEmpty()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Rewrites the Level files whose contents have changed since the last flush.
+	 * Only the changed levels are written, so a single word shift costs two small file writes.
+	 * Levels that have only had words added to their end just have those words appended to their Level files.
+	 */
+	void flush() {
+		synchronized (_flushLock) {
+			if (_discarded) {
+				return;
+			}
+
+			//Take a snapshot of the dirty levels so the index is not locked while writing to disk
+			ArrayList<List<String>> wordsByLevel;
+			boolean[] levelsToWrite;
+			ArrayList<ArrayList<String>> wordsToAppend;
+			synchronized (this) {
+				if (!isDirty()) {
+					return;
+				}
+				wordsByLevel = getWordsByLevel();
+				levelsToWrite = _dirtyLevels.clone();
+				wordsToAppend = _appendedWords;
+				_appendedWords = new ArrayList<ArrayList<String>>();
+				for (int i = 0; i < _dirtyLevels.length; i++) {
+					_dirtyLevels[i] = false;
+					_appendedWords.add(new ArrayList<String>());
+				}
+			}
+
+			for (int i = 0; i < levelsToWrite.length; i++) {
+				if (!levelsToWrite[i] && wordsToAppend.get(i).isEmpty()) {
+					continue;
+				}
+				Path levelFilePath = _category._categoryLevelFilePaths.get(i);
+				try {
+					Files.createDirectories(_category._categoryFolder);
+					if (levelsToWrite[i]) {
+						Files.write(levelFilePath, wordsByLevel.get(i), StandardCharsets.ISO_8859_1);
+					} else {
+						Files.write(levelFilePath, wordsToAppend.get(i), StandardCharsets.ISO_8859_1, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+					}
+				} catch (IOException e) {
+					e.printStackTrace();
+					synchronized (this) {
+						markLevelDirty(CategoryLevel.getCategoryLevelGivenInt(i + 1)); //rewrite the whole Level file on the next flush
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Marks this index as no longer in use (e.g. because the category's files are about to be deleted).
+	 * Any pending changes are dropped and later flushes do nothing.
+	 * Blocks until a flush that is already writing has finished.
+	 */
+	void discard() {
+		synchronized (_flushLock) {
+			_discarded = true;
+			synchronized (this) {
+				_levelsOfWords.clear();
+				for (int i = 0; i < _dirtyLevels.length; i++) {
+					_dirtyLevels[i] = false;
+					_appendedWords.get(i).clear();
+				}
+			}
+		}
+	}
+}
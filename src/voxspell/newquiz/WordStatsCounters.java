@@ -0,0 +1,156 @@
+package voxspell.newquiz;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import voxspell.newquiz.HiddenQuizFilesModel.WordMastery;
+
+/**
+ * A table of the number of times each word of a category has been mastered, faulted and failed.
+ * Every word is interned to an integer id once, and the counters are kept in primitive arrays indexed by that id,
+ * so that the table is updated in O(1) as each attempt is recorded and a scoreboard can be built from it in a single pass.
+ * The word ids are the same ids that the AttemptJournal records refer to.
+ * @author echa232
+ *
+ */
+public class WordStatsCounters {
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	private HashMap<String, Integer> _wordIds;
+	private String[] _words;
+	private int[] _masteredCounts;
+	private int[] _faultedCounts;
+	private int[] _failedCounts;
+	private int _numOfWords;
+
+	WordStatsCounters() {
+		_wordIds = new HashMap<String, Integer>();
+		_words = new String[INITIAL_CAPACITY];
+		_masteredCounts = new int[INITIAL_CAPACITY];
+		_faultedCounts = new int[INITIAL_CAPACITY];
+		_failedCounts = new int[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Returns the id of the word, or -1 if the word has never been interned.
+	 */
+	public int getWordId(String word) {
+		Integer wordId = _wordIds.get(word);
+		return (wordId == null) ? -1 : wordId;
+	}
+
+	public int getNumOfWords() {
+		return _numOfWords;
+	}
+
+	public String getWord(int wordId) {
+		return _words[wordId];
+	}
+
+	/**
+	 * Returns the number of times the word with the given id has been mastered/faulted/failed.
+	 * Returns 0 for the id -1, so the result of getWordId() can be passed straight in.
+	 */
+	public int getCount(int wordId, WordMastery mastery) {
+		if (wordId < 0) {
+			return 0;
+		}
+		switch (mastery) {
+		case MASTERED:
+			return _masteredCounts[wordId];
+		case FAULTED:
+			return _faultedCounts[wordId];
+		case FAILED:
+			return _failedCounts[wordId];
+		}
+		return 0;
+	}
+
+	public int getCount(String word, WordMastery mastery) {
+		return getCount(getWordId(word), mastery);
+	}
+
+	/**
+	 * Returns the id of the word, giving the word the next free id if it has never been seen before.
+	 */
+	int internWord(String word) {
+		Integer wordId = _wordIds.get(word);
+		if (wordId != null) {
+			return wordId;
+		}
+		ensureCapacity(_numOfWords + 1);
+		_words[_numOfWords] = word;
+		_wordIds.put(word, _numOfWords);
+		return _numOfWords++;
+	}
+
+	void increment(int wordId, WordMastery mastery) {
+		addToCount(wordId, mastery, 1);
+	}
+
+	void addToCount(int wordId, WordMastery mastery, int amount) {
+		switch (mastery) {
+		case MASTERED:
+			_masteredCounts[wordId] += amount;
+			break;
+		case FAULTED:
+			_faultedCounts[wordId] += amount;
+			break;
+		case FAILED:
+			_failedCounts[wordId] += amount;
+			break;
+		}
+	}
+
+	void setCounts(int wordId, int mastered, int faulted, int failed) {
+		_masteredCounts[wordId] = mastered;
+		_faultedCounts[wordId] = faulted;
+		_failedCounts[wordId] = failed;
+	}
+
+	boolean hasAnyCounts(int wordId) {
+		return _masteredCounts[wordId] != 0 || _faultedCounts[wordId] != 0 || _failedCounts[wordId] != 0;
+	}
+
+	/**
+	 * Sets the counters of the word with the given id back to zero. The word keeps its id.
+	 */
+	void clear(int wordId) {
+		setCounts(wordId, 0, 0, 0);
+	}
+
+	/**
+	 * Sets every counter back to zero. All words keep their ids.
+	 */
+	void clearAll() {
+		Arrays.fill(_masteredCounts, 0);
+		Arrays.fill(_faultedCounts, 0);
+		Arrays.fill(_failedCounts, 0);
+	}
+
+	/**
+	 * Returns an independent copy of the table, e.g. for reading it outside of the owner's lock.
+	 */
+	WordStatsCounters copy() {
+		WordStatsCounters copy = new WordStatsCounters();
+		copy._wordIds = new HashMap<String, Integer>(_wordIds);
+		copy._words = _words.clone();
+		copy._masteredCounts = _masteredCounts.clone();
+		copy._faultedCounts = _faultedCounts.clone();
+		copy._failedCounts = _failedCounts.clone();
+		copy._numOfWords = _numOfWords;
+		return copy;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity <= _words.length) {
+			return;
+		}
+		int newCapacity = Math.max(capacity, _words.length * 2);
+		_words = Arrays.copyOf(_words, newCapacity);
+		_masteredCounts = Arrays.copyOf(_masteredCounts, newCapacity);
+		_faultedCounts = Arrays.copyOf(_faultedCounts, newCapacity);
+		_failedCounts = Arrays.copyOf(_failedCounts, newCapacity);
+	}
+}
@@ -0,0 +1,175 @@
+package voxspell.scoreboard;
+
+import java.util.Arrays;
+import java.util.List;
+
+import voxspell.newquiz.HiddenQuizFilesModel;
+import voxspell.newquiz.HiddenQuizFilesModel.QuizCategory;
+import voxspell.newquiz.HiddenQuizFilesModel.WordMastery;
+import voxspell.newquiz.WordStatsCounters;
+
+/**
+ * The scores of a single category, computed from the category's files at one point in time.
+ * The scores are stored column by column in typed arrays (one row per word).
+ * The rows are shown through a permutation of row indices, and values are only formatted as text when asked for.
+ * Building the scores reads the category's files, so it is done off the EDT (see ScoreboardScreen); once built, the scores never change.
+ * @author echa232
+ *
+ */
+class ScoreboardData {
+
+	private static final int MAX_ACCURACY_RATE = 100;
+
+	private HiddenQuizFilesModel _filesModel; //the files model is useful for getting the necessary info to show scores
+	private WordStatsCounters _statsCounters; //number of times each word has been mastered, faulted and failed
+	private List<List<String>> _listsOfAllWordsByLevels;
+
+	/*
+	 * The columns of the database. Row i of the database is made of element i of each column.
+	 */
+	private String[] _words;
+	private int[] _masteredCounts;
+	private int[] _faultedCounts;
+	private int[] _failedCounts;
+	private int[] _accuracyRates;
+
+	private int[] _sortedRows; //position in the table -> row of the database
+
+	private int _categoryOverallRate;
+
+	private QuizCategory _category;
+	private long _categoryVersion; //version of the category's files that the scores were built from
+
+	ScoreboardData(QuizCategory category) {
+		_category = category;
+		_filesModel = HiddenQuizFilesModel.getInstance();
+		//read the version first, so that a change made while reading the files makes these scores out of date rather than wrongly up to date
+		_categoryVersion = _filesModel.getCategoryVersion(category);
+		_statsCounters = _filesModel.readCategoryStatsCounters(category);
+		_listsOfAllWordsByLevels = _filesModel.readCategoryLevelFilesWordsIntoArray(category);
+		createDatabase();
+		_categoryOverallRate = calcCategoryOverallRate();
+	}
+
+	/**
+	 * For each word in category,
+	 * look up number of times mastered, faulted and failed from the category's stats counters
+	 * calculate accuracy rate of word.
+	 * Then, add the word and the calculated values to the database
+	 * This is a single pass over the words of the category, independent of how many attempts have been made.
+	 * The words are put in alphabetical order first, so that sorting by accuracy afterwards only needs a stable sort.
+	 */
+	private void createDatabase() {
+		_words = groupAllWordsInCategoryIntoOneArray();
+		Arrays.sort(_words);
+
+		int numOfWords = _words.length;
+		_masteredCounts = new int[numOfWords];
+		_faultedCounts = new int[numOfWords];
+		_failedCounts = new int[numOfWords];
+		_accuracyRates = new int[numOfWords];
+
+		for (int i = 0; i < numOfWords; i++) {
+			int wordId = _statsCounters.getWordId(_words[i]);
+			int countMastered = _statsCounters.getCount(wordId, WordMastery.MASTERED);
+			int countFaulted = _statsCounters.getCount(wordId, WordMastery.FAULTED);
+			int countFailed = _statsCounters.getCount(wordId, WordMastery.FAILED);
+			_masteredCounts[i] = countMastered;
+			_faultedCounts[i] = countFaulted;
+			_failedCounts[i] = countFailed;
+
+			//accuracy rate is calculated by (mastered)/(mastered+faulted+failed) * 100
+			_accuracyRates[i] = (int) Math.round((countMastered*1.0 / (countMastered + countFaulted + countFailed)) * 100);
+		}
+
+		sortDatabase();
+	}
+
+	private String[] groupAllWordsInCategoryIntoOneArray() {
+		int numOfWords = 0;
+		for (int i = 0; i < _listsOfAllWordsByLevels.size(); i++) {
+			numOfWords += _listsOfAllWordsByLevels.get(i).size();
+		}
+
+		String[] allWords = new String[numOfWords];
+		int position = 0;
+		for (int i = 0; i < _listsOfAllWordsByLevels.size(); i++) {
+			for (String word : _listsOfAllWordsByLevels.get(i)) {
+				allWords[position++] = word;
+			}
+		}
+
+		return allWords;
+	}
+
+	/**
+	 * First sort by the scores by decreasing accuracy rates, then by ascending alphabetical order
+	 * The rows are already in alphabetical order and accuracy rates are whole percentages,
+	 * so a stable counting sort of the row indices by accuracy rate gives the required order in linear time.
+	 */
+	private void sortDatabase() {
+		int[] rowsAtEachRate = new int[MAX_ACCURACY_RATE + 2];
+		for (int rate : _accuracyRates) {
+			rowsAtEachRate[MAX_ACCURACY_RATE - rate + 1]++;
+		}
+		for (int i = 1; i < rowsAtEachRate.length; i++) {
+			rowsAtEachRate[i] += rowsAtEachRate[i - 1]; //now the position in the table of the first row at each rate
+		}
+
+		_sortedRows = new int[_words.length];
+		for (int row = 0; row < _words.length; row++) {
+			int bucket = MAX_ACCURACY_RATE - _accuracyRates[row];
+			_sortedRows[rowsAtEachRate[bucket]++] = row;
+		}
+	}
+
+	private int calcCategoryOverallRate() {
+		int overallCategoryRate = 0;
+
+		long totalRatesOfWords = 0;
+
+		for (int rate : _accuracyRates) { //for each word, add up the % and divide that by (total # of words * 100%)
+			totalRatesOfWords += rate;
+		}
+
+		overallCategoryRate = (int)Math.round(totalRatesOfWords/(_words.length * 100.0) * 100);
+
+		return overallCategoryRate;
+	}
+
+	QuizCategory getCategory() {
+		return _category;
+	}
+
+	/**
+	 * Returns true if the category's files have not changed since these scores were built
+	 */
+	boolean isUpToDate() {
+		return _categoryVersion == _filesModel.getCategoryVersion(_category);
+	}
+
+	int getCategoryOverallRate() {
+		return _categoryOverallRate;
+	}
+
+	int getRowCount() {
+		return _words.length;
+	}
+
+	Object getValueAt(int rowIndex, int columnIndex) {
+		int row = _sortedRows[rowIndex];
+		switch (columnIndex) {
+		case 0:
+			return _words[row];
+		case 1:
+			return Integer.toString(_masteredCounts[row]);
+		case 2:
+			return Integer.toString(_faultedCounts[row]);
+		case 3:
+			return Integer.toString(_failedCounts[row]);
+		case 4:
+			return _accuracyRates[row] + "%";
+		}
+		return null;
+	}
+}
@@ -6,6 +6,8 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.ItemEvent;
 import java.awt.event.ItemListener;
+import java.util.EnumMap;
+import java.util.concurrent.ExecutionException;
 
 import javax.swing.JButton;
 import javax.swing.JComboBox;
@@ -14,6 +16,7 @@ import javax.swing.JOptionPane;
 import javax.swing.JProgressBar;
 import javax.swing.JScrollPane;
 import javax.swing.JTable;
+import javax.swing.SwingWorker;
 import javax.swing.border.MatteBorder;
 
 import voxspell.Screen;
@@ -22,6 +25,14 @@ import voxspell.VoxSpellApp.AppScreen;
 import voxspell.newquiz.HiddenQuizFilesModel;
 import voxspell.newquiz.HiddenQuizFilesModel.QuizCategory;
 
+/**
+ * This class represents the screen object that shows the user's scores of a category.
+ * Applies the MVC design pattern, where the screen acts as the View-Controller and a ScoreboardModel is its model.
+ * The scores of every category are built in the background (see ScoreboardLoader) and cached until the category's files change,
+ * so that showing the screen and switching between categories does not read any files on the EDT.
+ * @author echa232
+ *
+ */
 @SuppressWarnings("serial")
 public class ScoreboardScreen extends Screen {
 	
@@ -33,16 +44,25 @@ public class ScoreboardScreen extends Screen {
 	JButton _btnReturn;
 	
 	HiddenQuizFilesModel _filesModel; //model that is necessary for resetting the scores
-	ScoreboardModel _currentScoreboardModel = new ScoreboardModel(QuizCategory.Adjectives); //Default StatsModel is of the adjectives category
+	ScoreboardModel _scoreboardModel; //the single table model reused for every category
 	JTable _statsTable;
+
+	/*
+	 * Note: these are set up in buildScreenGUI() rather than with field initialisers,
+	 * as buildScreenGUI() is called by the super constructor before field initialisers run.
+	 */
+	private EnumMap<QuizCategory, ScoreboardData> _cachedScores; //latest scores built for each category
+	private EnumMap<QuizCategory, ScoreboardLoader> _scoreLoaders; //categories whose scores are currently being built
 	
 	public ScoreboardScreen(VoxSpellApp screenOwner) {
 		super(screenOwner);
-		_filesModel = HiddenQuizFilesModel.getInstance();
 	}
 
 	@Override
 	protected void buildScreenGUI() {
+		_filesModel = HiddenQuizFilesModel.getInstance();
+		_cachedScores = new EnumMap<QuizCategory, ScoreboardData>(QuizCategory.class);
+		_scoreLoaders = new EnumMap<QuizCategory, ScoreboardLoader>(QuizCategory.class);
 		
 		/*
 		 * Build the GUI section for the screen's title heading
@@ -95,10 +115,12 @@ public class ScoreboardScreen extends Screen {
 		/*
 		 * Build the GUI section that shows the scrollable table of the user's score details of the selected category
 		 */		
-		_statsTable = new JTable(_currentScoreboardModel);
+		_scoreboardModel = new ScoreboardModel();
+		_statsTable = new JTable(_scoreboardModel);
 		_scoreScrollPane = new JScrollPane(_statsTable);	
 		_scoreScrollPane.setBounds(20, 210, 750, 270);
 		_screenPanel.add(_scoreScrollPane);
+		formatTableStyle();
 
 		updateScreen(); //updates both the progress bar and table with the correct values
 		
@@ -138,24 +160,9 @@ public class ScoreboardScreen extends Screen {
 			public void actionPerformed(ActionEvent e) {
 				int clear = JOptionPane.showConfirmDialog(null, "Are you sure you want to clear your scores?\nNote: Only scores of this category will be cleared.", "Confirm Clear Scores", JOptionPane.YES_NO_OPTION, JOptionPane.QUESTION_MESSAGE);
 				if (clear == JOptionPane.YES_OPTION) {
-					switch (_categoryComboBox.getSelectedItem().toString()) {
-					case "Adjectives":
-						_filesModel.reset(QuizCategory.Adjectives);
-						_currentScoreboardModel = new ScoreboardModel(QuizCategory.Adjectives);
-						break;
-					case "Adverbs":
-						_filesModel.reset(QuizCategory.Adverbs);
-						_currentScoreboardModel = new ScoreboardModel(QuizCategory.Adverbs);
-						break;
-					case "Nouns":
-						_filesModel.reset(QuizCategory.Nouns);
-						_currentScoreboardModel = new ScoreboardModel(QuizCategory.Nouns);
-						break;
-					case "Verbs":
-						_filesModel.reset(QuizCategory.Verbs);
-						_currentScoreboardModel = new ScoreboardModel(QuizCategory.Verbs);
-						break;
-					}
+					QuizCategory category = getSelectedCategory();
+					_filesModel.reset(category);
+					_cachedScores.remove(category); //don't show the old scores while the cleared scores load
 					
 					updateScreen();
 					JOptionPane.showMessageDialog(null, "Scores cleared.");
@@ -174,32 +181,71 @@ public class ScoreboardScreen extends Screen {
 	
 	/**
 	 * Updates the screen with the latest scores
+	 * Cached scores are shown straight away. Any category whose files have changed since its scores were built
+	 * has its scores rebuilt in the background (the selected category first), and the table is refreshed once they are ready.
 	 */
 	public void updateScreen() {
+		QuizCategory selectedCategory = getSelectedCategory();
+
+		ScoreboardData scores = _cachedScores.get(selectedCategory);
+		if (scores != null && scores.isUpToDate()) {
+			showScores(scores, true);
+		} else {
+			showScores(scores, false); //show the old scores (if any) until the new scores are ready
+			loadScoresInBackground(selectedCategory);
+		}
+
+		//Get the other categories ready too, so that switching to them is instant
+		for (QuizCategory category : QuizCategory.values()) {
+			ScoreboardData cachedScores = _cachedScores.get(category);
+			if (cachedScores == null || !cachedScores.isUpToDate()) {
+				loadScoresInBackground(category);
+			}
+		}
+	}
+
+	/**
+	 * Shows the given scores in the table and the progress bar.
+	 * @param notifyIfComplete whether to congratulate the user if the category is at 100%
+	 */
+	private void showScores(ScoreboardData scores, boolean notifyIfComplete) {
+		_scoreboardModel.showScores(scores);
+		_progressBar.setValue(_scoreboardModel.getCategoryOverallRate());
+		
+		if (notifyIfComplete && _scoreboardModel.getCategoryOverallRate() == 100) {
+			notifyCategoryComplete();
+		}
+	}
+
+	/**
+	 * Starts building the scores of the category in the background, unless they are already being built.
+	 */
+	private void loadScoresInBackground(QuizCategory category) {
+		if (_scoreLoaders.containsKey(category)) {
+			return;
+		}
+		ScoreboardLoader loader = new ScoreboardLoader(category);
+		_scoreLoaders.put(category, loader);
+		loader.execute();
+	}
+
+	private QuizCategory getSelectedCategory() {
+		QuizCategory selectedCategory = null;
 		switch (_categoryComboBox.getSelectedItem().toString()) {
 		case "Adjectives":
-			_currentScoreboardModel = new ScoreboardModel(QuizCategory.Adjectives);
+			selectedCategory = QuizCategory.Adjectives;
 			break;
 		case "Adverbs":
-			_currentScoreboardModel = new ScoreboardModel(QuizCategory.Adverbs);
+			selectedCategory = QuizCategory.Adverbs;
 			break;
 		case "Nouns":
-			_currentScoreboardModel = new ScoreboardModel(QuizCategory.Nouns);
+			selectedCategory = QuizCategory.Nouns;
 			break;
 		case "Verbs":
-			_currentScoreboardModel = new ScoreboardModel(QuizCategory.Verbs);
+			selectedCategory = QuizCategory.Verbs;
 			break;
 		}
-		
-		//Refresh table and reformat it in desired style
-		_statsTable = new JTable(_currentScoreboardModel);			
-		formatTableStyle();
-		
-		_progressBar.setValue(_currentScoreboardModel.getCategoryOverallRate());
-		
-		if (_currentScoreboardModel.getCategoryOverallRate() == 100) {
-			notifyCategoryComplete();
-		}
+		return selectedCategory;
 	}
 	
 	/**
@@ -218,7 +264,6 @@ public class ScoreboardScreen extends Screen {
 		_statsTable.setBackground(Color.WHITE);
 		_statsTable.setAutoscrolls(true);
 		_statsTable.setFillsViewportHeight(true);
-		_scoreScrollPane.setViewportView(_statsTable);
 	}
 	
 	/**
@@ -230,4 +275,43 @@ public class ScoreboardScreen extends Screen {
 				+ "You have reached 100% for all words in this category!", 
 				"Achievement: Category complete!", JOptionPane.INFORMATION_MESSAGE);
 	}
+
+	/**
+	 * Swing Worker class that builds the scores of a category in the background so that the GUI does not freeze while the files are read
+	 */
+	private class ScoreboardLoader extends SwingWorker<ScoreboardData, Void> {
+
+		private QuizCategory _category;
+
+		public ScoreboardLoader(QuizCategory category) {
+			_category = category;
+		}
+
+		@Override
+		protected ScoreboardData doInBackground() {
+			return new ScoreboardData(_category);
+		}
+
+		@Override
+		protected void done() {
+			_scoreLoaders.remove(_category);
+			ScoreboardData scores;
+			try {
+				scores = get();
+			} catch (InterruptedException | ExecutionException e) {
+				e.printStackTrace();
+				return;
+			}
+
+			if (!scores.isUpToDate()) { //the category changed while its scores were being built (e.g. scores were cleared)
+				loadScoresInBackground(_category);
+				return;
+			}
+
+			_cachedScores.put(_category, scores);
+			if (_category == getSelectedCategory()) {
+				showScores(scores, true);
+			}
+		}
+	}
 }
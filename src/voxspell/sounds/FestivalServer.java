@@ -0,0 +1,193 @@
+package voxspell.sounds;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A long-lived Festival process running in server mode, and a socket connection to it.
+ * Festival is started (and its voices loaded) once, instead of once per utterance, and Scheme commands
+ * such as SayText are sent to it over a local socket. If the Festival process dies, it is restarted automatically
+ * the next time a command is sent.
+ *
+ * The server replies to each command with "LP" (followed by the Lisp result, ending in a key string), and then
+ * "OK" once the command has finished (for SayText, once the speech has finished playing) or "ER" if it failed.
+ * @author echa232
+ *
+ */
+class FestivalServer {
+
+	private static final String RESULT_KEY = "ft_StUfF_key"; //marks the end of an "LP" result
+	private static final long STARTUP_TIMEOUT_MILLIS = 10000;
+	private static final long CONNECT_RETRY_MILLIS = 100;
+
+	private Path _serverConfigFilePath;
+
+	private Process _process;
+	private Socket _socket;
+	private BufferedReader _fromServer;
+	private Writer _toServer;
+
+	FestivalServer(Path serverConfigFilePath) {
+		_serverConfigFilePath = serverConfigFilePath;
+
+		//Festival would otherwise keep running after the application has closed
+		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+			@Override
+			public void run() {
+				shutdown();
+			}
+		}));
+	}
+
+	/**
+	 * Sends the Scheme commands to Festival, one after the other, and waits until all of them have finished.
+	 * If Festival is not running (or has died), it is started first. If sending fails, Festival is restarted and the commands are sent once more.
+	 * @return false if Festival reported an error for any of the commands
+	 * @throws IOException if Festival could not be started or could not be talked to even after restarting it
+	 */
+	synchronized boolean evaluate(List<String> commands) throws IOException {
+		try {
+			ensureRunning();
+			return sendAndAwaitReplies(commands);
+		} catch (IOException e) {
+			shutdown();
+			ensureRunning();
+			return sendAndAwaitReplies(commands);
+		}
+	}
+
+	synchronized boolean evaluate(String command) throws IOException {
+		List<String> commands = new ArrayList<String>();
+		commands.add(command);
+		return evaluate(commands);
+	}
+
+	/**
+	 * Stops the Festival process. It will be started again the next time a command is sent.
+	 */
+	synchronized void shutdown() {
+		try {
+			if (_socket != null) {
+				_socket.close();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		_socket = null;
+		_fromServer = null;
+		_toServer = null;
+
+		if (_process != null) {
+			_process.destroy();
+			_process = null;
+		}
+	}
+
+	private void ensureRunning() throws IOException {
+		if (_process != null && _process.isAlive() && _socket != null && !_socket.isClosed()) {
+			return;
+		}
+		shutdown();
+
+		int port = findFreePort();
+		ArrayList<String> serverConfig = new ArrayList<String>();
+		serverConfig.add("(set! server_port " + port + ")");
+		serverConfig.add("(audio_mode 'sync)"); //so that "OK" is only sent once speech has finished playing
+		Files.write(_serverConfigFilePath, serverConfig, StandardCharsets.ISO_8859_1);
+
+		ProcessBuilder pb = new ProcessBuilder("festival", _serverConfigFilePath.toString(), "--server");
+		pb.redirectErrorStream(true);
+		pb.redirectOutput(new File("/dev/null"));
+		_process = pb.start();
+
+		//Festival takes a moment to load before it starts accepting connections
+		long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT_MILLIS;
+		while (true) {
+			try {
+				Socket socket = new Socket();
+				socket.connect(new InetSocketAddress("localhost", port));
+				_socket = socket;
+				break;
+			} catch (IOException e) {
+				if (!_process.isAlive() || System.currentTimeMillis() > deadline) {
+					shutdown();
+					throw new IOException("Festival server could not be started", e);
+				}
+				try {
+					Thread.sleep(CONNECT_RETRY_MILLIS);
+				} catch (InterruptedException interrupted) {
+					Thread.currentThread().interrupt();
+					shutdown();
+					throw new IOException("Interrupted while starting the Festival server", interrupted);
+				}
+			}
+		}
+
+		_fromServer = new BufferedReader(new InputStreamReader(_socket.getInputStream(), StandardCharsets.ISO_8859_1));
+		_toServer = new OutputStreamWriter(_socket.getOutputStream(), StandardCharsets.ISO_8859_1);
+	}
+
+	private boolean sendAndAwaitReplies(List<String> commands) throws IOException {
+		for (String command : commands) {
+			_toServer.write(command + "\n");
+		}
+		_toServer.flush();
+
+		boolean succeeded = true;
+		int numOfRepliesLeft = commands.size();
+		String line = _fromServer.readLine();
+		while (numOfRepliesLeft > 0) {
+			if (line == null) {
+				throw new IOException("Festival server closed the connection");
+			}
+			if (line.startsWith("OK")) {
+				numOfRepliesLeft--;
+				line = (numOfRepliesLeft > 0) ? _fromServer.readLine() : null;
+			} else if (line.startsWith("ER")) {
+				succeeded = false;
+				numOfRepliesLeft--;
+				line = (numOfRepliesLeft > 0) ? _fromServer.readLine() : null;
+			} else if (line.startsWith("LP")) {
+				line = skipResult(line.substring(2));
+			} else {
+				line = _fromServer.readLine();
+			}
+		}
+		return succeeded;
+	}
+
+	/**
+	 * Skips over the Lisp result of a command, which ends with the result key.
+	 * The next reply may follow the key on the same line, so whatever comes after the key is returned as the next line to process.
+	 */
+	private String skipResult(String restOfLine) throws IOException {
+		String line = restOfLine;
+		while (line != null) {
+			int keyIndex = line.indexOf(RESULT_KEY);
+			if (keyIndex >= 0) {
+				String afterKey = line.substring(keyIndex + RESULT_KEY.length());
+				return (afterKey.length() > 0) ? afterKey : _fromServer.readLine();
+			}
+			line = _fromServer.readLine();
+		}
+		return null;
+	}
+
+	private static int findFreePort() throws IOException {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+}
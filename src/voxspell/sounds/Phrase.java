@@ -0,0 +1,37 @@
+package voxspell.sounds;
+
+import voxspell.sounds.SpeechAndSoundModel.Voice;
+
+/**
+ * A single piece of text for Festival to render in one go: the text, the voice it is said in and whether it is said at the slower pace.
+ * Each phrase is rendered once and kept in the speech cache. Speeches are then assembled from these phrases (see Speech),
+ * so that a phrase such as "Please spell..." is shared by the prompts of every word.
+ * @author echa232
+ *
+ */
+class Phrase {
+
+	final Voice _voice;
+	final boolean _slowPaced;
+	final String _text;
+
+	Phrase(Voice voice, boolean slowPaced, String text) {
+		_voice = voice;
+		_slowPaced = slowPaced;
+		_text = text;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof Phrase)) {
+			return false;
+		}
+		Phrase other = (Phrase) obj;
+		return _voice == other._voice && _slowPaced == other._slowPaced && _text.equals(other._text);
+	}
+
+	@Override
+	public int hashCode() {
+		return (_voice.hashCode() * 31 + (_slowPaced ? 1 : 0)) * 31 + _text.hashCode();
+	}
+}
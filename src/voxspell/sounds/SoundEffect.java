@@ -0,0 +1,110 @@
+package voxspell.sounds;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.Clip;
+import javax.sound.sampled.LineEvent;
+import javax.sound.sampled.LineListener;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+/**
+ * A short sound effect that is decoded once and kept in memory in an open Clip, so that it can be played instantly
+ * and at the same time as a speech, instead of starting mpg123 every time it is played.
+ * Java cannot decode MP3 itself, so the MP3 file is decoded to a WAV file by mpg123 the first time (and again only if the MP3 file changes).
+ * @author echa232
+ *
+ */
+class SoundEffect {
+
+	private Path _mp3FilePath;
+	private Path _waveFilePath;
+
+	private Clip _clip; //null until loaded, or if the sound effect could not be loaded
+
+	SoundEffect(Path mp3FilePath, Path waveFilePath) {
+		_mp3FilePath = mp3FilePath;
+		_waveFilePath = waveFilePath;
+	}
+
+	/**
+	 * Decodes the sound effect and opens a Clip for it. If this fails, isLoaded() stays false.
+	 */
+	void load() {
+		try {
+			if (Files.notExists(_waveFilePath)
+					|| Files.getLastModifiedTime(_waveFilePath).compareTo(Files.getLastModifiedTime(_mp3FilePath)) < 0) {
+				decodeMP3File();
+			}
+
+			try (AudioInputStream audioStream = AudioSystem.getAudioInputStream(_waveFilePath.toFile())) {
+				AudioFormat format = audioStream.getFormat();
+				ByteArrayOutputStream pcmData = new ByteArrayOutputStream();
+				byte[] buffer = new byte[4096];
+				int numOfBytesRead;
+				while ((numOfBytesRead = audioStream.read(buffer)) != -1) {
+					pcmData.write(buffer, 0, numOfBytesRead);
+				}
+
+				Clip clip = AudioSystem.getClip();
+				clip.open(format, pcmData.toByteArray(), 0, pcmData.size());
+				synchronized (this) {
+					_clip = clip;
+				}
+			}
+		} catch (IOException | UnsupportedAudioFileException | LineUnavailableException | IllegalArgumentException e) {
+			e.printStackTrace();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	synchronized boolean isLoaded() {
+		return _clip != null;
+	}
+
+	/**
+	 * Plays the sound effect from the beginning and returns straight away.
+	 * @return a latch that is counted down once the sound effect has stopped playing (already counted down if the sound effect is not loaded)
+	 */
+	synchronized CountDownLatch play() {
+		final CountDownLatch finished = new CountDownLatch(1);
+		if (_clip == null) {
+			finished.countDown();
+			return finished;
+		}
+		final Clip clip = _clip;
+		clip.stop();
+		clip.setFramePosition(0);
+		clip.addLineListener(new LineListener() {
+			@Override
+			public void update(LineEvent event) {
+				if (event.getType() == LineEvent.Type.STOP) {
+					clip.removeLineListener(this);
+					finished.countDown();
+				}
+			}
+		});
+		clip.start();
+		return finished;
+	}
+
+	private void decodeMP3File() throws IOException, InterruptedException {
+		ProcessBuilder pb = new ProcessBuilder("mpg123", "-q", "-w", _waveFilePath.toString(), _mp3FilePath.toString());
+		pb.redirectErrorStream(true);
+		pb.redirectOutput(new File("/dev/null"));
+		Process process = pb.start();
+		if (process.waitFor() != 0) {
+			Files.deleteIfExists(_waveFilePath);
+			throw new IOException("mpg123 could not decode " + _mp3FilePath);
+		}
+	}
+}
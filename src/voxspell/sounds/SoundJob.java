@@ -0,0 +1,46 @@
+package voxspell.sounds;
+
+import java.util.concurrent.TimeUnit;
+
+import voxspell.sounds.SpeechScheduler.SoundPriority;
+
+/**
+ * A speech or sound effect that is waiting to be played (or is playing) on the SpeechScheduler.
+ * A job can be cancelled at any time: if it has not started yet it will never start, and if it is playing it stops
+ * as soon as it next checks isCancelled() (e.g. between two buffers of audio).
+ * @author echa232
+ *
+ */
+abstract class SoundJob implements Runnable {
+
+	private static final long PROCESS_POLL_MILLIS = 50;
+
+	final SoundPriority _priority;
+	long _sequenceNumber; //set by the scheduler, so that jobs of the same priority are played in the order they were scheduled
+
+	private volatile boolean _cancelled;
+
+	SoundJob(SoundPriority priority) {
+		_priority = priority;
+	}
+
+	void cancel() {
+		_cancelled = true;
+	}
+
+	boolean isCancelled() {
+		return _cancelled;
+	}
+
+	/**
+	 * Waits for the process to finish, killing it if this job is cancelled in the meantime.
+	 */
+	protected void waitForProcess(Process process) throws InterruptedException {
+		while (!process.waitFor(PROCESS_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+			if (_cancelled) {
+				process.destroy();
+				return;
+			}
+		}
+	}
+}
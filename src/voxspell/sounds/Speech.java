@@ -0,0 +1,99 @@
+package voxspell.sounds;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import voxspell.sounds.SpeechAndSoundModel.Voice;
+
+/**
+ * Something for the quiz to say, e.g. the prompt asking the user to spell a word.
+ * A speech is assembled from phrases with short pauses in between: the constant carrier phrases (e.g. "Please spell...")
+ * are rendered once per voice, and the word is rendered on its own, so saying a prompt for a word whose phrases are cached
+ * is only a matter of joining the cached audio together (see WavePlayer).
+ * The factory methods build the speeches that the quiz uses for a word, so that the quiz, the prefetching and the pre-warming
+ * always agree on exactly which phrases are needed.
+ * @author echa232
+ *
+ */
+class Speech {
+
+	/*
+	 * Pauses between the phrases, matching the pauses Festival makes for the punctuation the speeches used to be written with
+	 */
+	private static final int PROMPT_PAUSE_MILLIS = 500; // "... ..."
+	private static final int LONG_PAUSE_MILLIS = 700; // "......"
+	private static final int SHORT_PAUSE_MILLIS = 300; // ":"
+
+	final Voice _voice;
+	final boolean _slowPaced;
+	final String _text; //the whole speech as a single piece of text, for when it cannot be assembled from phrases
+
+	final List<Phrase> _phrases;
+	final List<Integer> _pausesMillis; //the pause before each phrase
+
+	private Speech(Voice voice, boolean slowPaced, String text) {
+		_voice = voice;
+		_slowPaced = slowPaced;
+		_text = text;
+		_phrases = new ArrayList<Phrase>();
+		_pausesMillis = new ArrayList<Integer>();
+	}
+
+	private Speech addPhrase(int pauseMillisBefore, String phraseText) {
+		_phrases.add(new Phrase(_voice, _slowPaced, phraseText));
+		_pausesMillis.add(pauseMillisBefore);
+		return this;
+	}
+
+	/**
+	 * The speech that asks the user to spell the word
+	 */
+	static Speech prompt(Voice voice, String word) {
+		return new Speech(voice, false, "Please spell... ... " + word)
+				.addPhrase(0, "Please spell...")
+				.addPhrase(PROMPT_PAUSE_MILLIS, word);
+	}
+
+	/**
+	 * The speech that asks the user to try the word again after getting it wrong.
+	 * Depending on the voice, minor adjustments to the speech are required for appropriate pauses.
+	 */
+	static Speech faulted(Voice voice, String word) {
+		switch (voice) {
+		case NEW_ZEALAND:
+			return new Speech(voice, true, "Try once more: " + word + ": " + word)
+					.addPhrase(0, "Try once more:")
+					.addPhrase(SHORT_PAUSE_MILLIS, word)
+					.addPhrase(SHORT_PAUSE_MILLIS, word);
+		case AMERICAN:
+		default:
+			return new Speech(voice, false, "Try once more...... " + word + "...... " + word)
+					.addPhrase(0, "Try once more...")
+					.addPhrase(LONG_PAUSE_MILLIS, word)
+					.addPhrase(LONG_PAUSE_MILLIS, word);
+		}
+	}
+
+	/**
+	 * The speech that says the word again, slowly, when the user asks to hear it again
+	 */
+	static Speech relisten(Voice voice, String word) {
+		return new Speech(voice, true, word)
+				.addPhrase(0, word);
+	}
+
+	/**
+	 * Returns every phrase needed for the speeches the quiz can say for the word, in every voice (without repeats)
+	 */
+	static List<Phrase> getAllPhrasesOfWord(String word) {
+		LinkedHashSet<Phrase> phrases = new LinkedHashSet<Phrase>();
+		for (Voice voice : Voice.values()) {
+			for (Speech speech : Arrays.asList(prompt(voice, word), relisten(voice, word), faulted(voice, word))) {
+				phrases.addAll(speech._phrases);
+			}
+		}
+		return new ArrayList<Phrase>(phrases);
+	}
+}
@@ -1,19 +1,34 @@
 package voxspell.sounds;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import voxspell.sounds.SpeechScheduler.SoundPriority;
 
 /**
  * SpeechAndSoundModel is the class handles the code, logic, files and Bash commands
  * relating to making Festival calls and playing sound effects.
  * The Singleton design pattern is applied here to ensure that only one object is doing the bash commands.
+ * Speeches and sound effects are played one at a time, in order of priority, by a SpeechScheduler.
+ * Speeches the quiz is likely to need next are rendered ahead of time by a SpeechPrefetcher (see prefetchSpeech()).
+ * Speeches that are no longer needed (e.g. the prompt for a word the user has already answered) can be cancelled with cancelSpeech().
+ * Speech is sent to a single long-lived Festival server (see FestivalServer) rather than starting Festival for every utterance.
+ * Each phrase of a speech is rendered to a WAV file once and kept in a SpeechCache, so repeated speeches are assembled straight from disk.
+ * If the Festival server cannot be used, each utterance falls back to starting Festival and piping the speech to it.
+ * The sound effects are decoded once and kept in memory (see SoundEffect), so they play straight away, alongside any speech,
+ * instead of being queued behind the speeches. Only the faulted speech waits, for the wrong answer sound effect to finish.
+ * If they could not be loaded, the sound effects fall back to being queued to be played by mpg123.
  * 
  * Declaration: Majority of the code in this class is sourced from the group assignment 206 Assignment 3.
  * @author echa232
@@ -33,7 +48,11 @@ public class SpeechAndSoundModel {
 
 	private static SpeechAndSoundModel _festivalModel;
 
-	private ExecutorService _executorService;
+	private SpeechScheduler _speechScheduler;
+
+	private FestivalServer _festivalServer;
+	private SpeechCache _speechCache;
+	private SpeechPrefetcher _speechPrefetcher;
 
 	/*
 	 * File paths for Festival
@@ -45,19 +64,44 @@ public class SpeechAndSoundModel {
 	private static Path _masteredSpeechSCMFilePath;
 	private static Path _failedSpeechSCMFilePath;
 
+	private static Path _festivalServerConfigFilePath;
+	private static Path _speechCacheFolderPath;
+
+	//Scheme command that puts the speaking pace back to normal after the slow-paced voice has been used
+	private static final String NORMAL_PACED_VOICE_SCM_CMD = "(Parameter.set 'Duration_Stretch 1)";
+
 	/*
 	 * File paths for sound effects
 	 */
 	private static Path _correctSoundFXFilePath;
 	private static Path _wrongSoundFXFilePath;
 
+	private static final long MAX_SOUND_FX_MILLIS = 5000; //longer than either sound effect
+
+	private SoundEffect _correctSoundFX;
+	private SoundEffect _wrongSoundFX;
+
 	private SpeechAndSoundModel() {
 		_currentVoice = Voice.AMERICAN; //default voice is the American voice
-		_executorService = Executors.newSingleThreadExecutor();
+		_speechScheduler = new SpeechScheduler();
 		setupHiddenSoundFiles();
+		_festivalServer = new FestivalServer(_festivalServerConfigFilePath);
+		_speechCache = new SpeechCache(_speechCacheFolderPath);
+		_speechPrefetcher = new SpeechPrefetcher(this, Paths.get("./.festival/prefetchServer.scm"));
+
+		//Decode the sound effects once, before anything else is played
+		_correctSoundFX = new SoundEffect(_correctSoundFXFilePath, Paths.get("./.soundFX/Quiz_SoundEffect_CorrectAnswer.wav"));
+		_wrongSoundFX = new SoundEffect(_wrongSoundFXFilePath, Paths.get("./.soundFX/Quiz_SoundEffect_WrongAnswer.wav"));
+		_speechScheduler.schedule(new SoundJob(SoundPriority.FEEDBACK) {
+			@Override
+			public void run() {
+				_correctSoundFX.load();
+				_wrongSoundFX.load();
+			}
+		});
 	}
 
-	public static SpeechAndSoundModel getInstance() {
+	public static synchronized SpeechAndSoundModel getInstance() {
 		if (_festivalModel == null) {
 			_festivalModel = new SpeechAndSoundModel();
 		}
@@ -65,63 +109,73 @@ public class SpeechAndSoundModel {
 	}
 
 	public void speakCurrentWord(String currentWord) {
-		String speechSCMCmd = "(SayText \"Please spell... ... " + currentWord + "\")";
-		String tempFilePath = createAndGetTempSCMFile(speechSCMCmd).toString();
-		String accentVoiceFilePath = getCurrentVoiceFilePath().toString();
-
-		String festivalCommand = "festival -b " + accentVoiceFilePath + " " + tempFilePath;
-		Runnable workerThread = new SoundModelWorker(festivalCommand);
-		_executorService.execute(workerThread);
+		SoundJob workerThread = new FestivalSpeechWorker(Speech.prompt(_currentVoice, currentWord), SoundPriority.PROMPT);
+		_speechScheduler.schedule(workerThread);
 	}
 
 	public void playCorrectSoundFX(){
-		String soundFXCommand = "mpg123 " + _correctSoundFXFilePath;
-		Runnable workerThread = new SoundModelWorker(soundFXCommand);
-		_executorService.execute(workerThread);		
+		playSoundFX(_correctSoundFX, _correctSoundFXFilePath);
 	}
 
 	public void sayFaultedSpeech(String currentWord){
-		//First play the sound effect, then play Festival's speech
-		String soundFXCommand = "mpg123 " + _wrongSoundFXFilePath;
-		Runnable workerThread = new SoundModelWorker(soundFXCommand);
-		_executorService.execute(workerThread);
+		//Play the sound effect straight away, and Festival's speech once it has finished
+		CountDownLatch soundFXFinished = playSoundFX(_wrongSoundFX, _wrongSoundFXFilePath);
 
+		SoundJob workerThread = new FestivalSpeechWorker(Speech.faulted(_currentVoice, currentWord), SoundPriority.PROMPT, soundFXFinished);
+		_speechScheduler.schedule(workerThread);
+	}
 
-		String accentVoiceFilePath = getCurrentVoiceFilePath().toString();
-		String festivalCommand = "festival -b " + accentVoiceFilePath + " ";
+	public void playWrongSoundFX(){
+		playSoundFX(_wrongSoundFX, _wrongSoundFXFilePath);
+	}
 
-		//Depending on the current voice, minor adjustments to the speech is required for appropriate pauses.
-		String speechSCMCmd = null;		
-		switch (_currentVoice) {
-		case AMERICAN:
-			speechSCMCmd = "(SayText \"Try once more...... "+ currentWord + "...... " + currentWord + "\")";
-			break;
-		case NEW_ZEALAND:
-			speechSCMCmd = "(SayText \"Try once more: "+ currentWord + ": " + currentWord + "\")";
-			festivalCommand += _slowPacedVoiceFilePath.toString() + " ";
-			break;
+	/**
+	 * Plays the sound effect straight away, over any speech that is playing.
+	 * If the sound effect could not be loaded, it is queued to be played by mpg123 instead, ahead of any speech that is waiting.
+	 * @return a latch that is counted down once the sound effect has finished playing (already counted down if it was queued instead)
+	 */
+	private CountDownLatch playSoundFX(SoundEffect soundFX, Path soundFXFilePath) {
+		if (soundFX.isLoaded()) {
+			return soundFX.play();
 		}
-		String tempFilePath = createAndGetTempSCMFile(speechSCMCmd).toString();
-		festivalCommand += tempFilePath;
+		SoundJob workerThread = new SoundModelWorker("mpg123 " + soundFXFilePath, SoundPriority.FEEDBACK);
+		_speechScheduler.schedule(workerThread);
+		return new CountDownLatch(0);
+	}
 
-		workerThread = new SoundModelWorker(festivalCommand);
-		_executorService.execute(workerThread);
+	public void relistenWord(String currentWord) {
+		SoundJob workerThread = new FestivalSpeechWorker(Speech.relisten(_currentVoice, currentWord), SoundPriority.RELISTEN);
+		_speechScheduler.schedule(workerThread);		
 	}
 
-	public void playWrongSoundFX(){
-		String soundFXCommand = "mpg123 " + _wrongSoundFXFilePath;
-		Runnable workerThread = new SoundModelWorker(soundFXCommand);
-		_executorService.execute(workerThread);		
+	/**
+	 * Renders, in the background, the speeches the quiz is likely to need while the user is spelling the current word:
+	 * the faulted speech of the current word (in case the user gets it wrong) and the prompt of the next word.
+	 * @param nextWord the next word of the quiz, or null if the current word is the last one
+	 */
+	public void prefetchSpeech(String currentWord, String nextWord) {
+		List<Speech> speeches = new ArrayList<Speech>();
+		speeches.add(Speech.faulted(_currentVoice, currentWord));
+		if (nextWord != null) {
+			speeches.add(Speech.prompt(_currentVoice, nextWord));
+		}
+		_speechPrefetcher.prefetch(speeches);
 	}
 
-	public void relistenWord(String currentWord) {
-		String speechSCMCmd = "(SayText \"" + currentWord + "\")";
-		String tempFilePath = createAndGetTempSCMFile(speechSCMCmd).toString();
-		String accentVoiceFilePath = getCurrentVoiceFilePath().toString();
+	/**
+	 * Cancels every speech that has not finished playing yet, including the one that is currently playing.
+	 * Should be called when the quiz moves on, so that the user does not hear a backlog of speeches about words they have already answered.
+	 * Sound effects are not cancelled.
+	 */
+	public void cancelSpeech() {
+		_speechScheduler.cancelSpeech();
+	}
 
-		String festivalCommand = "festival -b " + accentVoiceFilePath + " " + _slowPacedVoiceFilePath.toString() + " " + tempFilePath;
-		Runnable workerThread = new SoundModelWorker(festivalCommand);
-		_executorService.execute(workerThread);		
+	/**
+	 * Returns the number of speeches and sound effects waiting to be played
+	 */
+	public int getSpeechQueueDepth() {
+		return _speechScheduler.getQueueDepth();
 	}
 
 	/**
@@ -162,6 +216,9 @@ public class SpeechAndSoundModel {
 			_masteredSpeechSCMFilePath = Paths.get("./.festival/masteredSpeech.scm");
 			_failedSpeechSCMFilePath = Paths.get("./.festival/failedSpeech.scm");
 
+			_festivalServerConfigFilePath = Paths.get("./.festival/server.scm");
+			_speechCacheFolderPath = Paths.get("./.festival/cache");
+
 			if (Files.notExists(_festivalFolderPath)) {
 				Files.createDirectory(_festivalFolderPath);
 
@@ -181,34 +238,6 @@ public class SpeechAndSoundModel {
 		}		
 	}
 
-	/**
-	 * This method will create a temporary SCM file to be passed as an argument to Festival commands.
-	 * The contents of the file consist of the given speech argument.
-	 * @param speech
-	 * @return
-	 */
-	private Path createAndGetTempSCMFile(String speech) {
-		try {
-			//Create the temp SCM file in a temp folder in ./.festival folder			
-			Path tempFolderPath = Paths.get("./.festival/temp");
-			Files.createDirectories(tempFolderPath);
-			Path tempSCMFilePath = Files.createTempFile(tempFolderPath, "tempSCM", ".scm");
-			tempSCMFilePath.toFile().deleteOnExit(); //delete the temp file when application is closed.
-
-			//Write the SCM code that makes Festival say the speech
-			ArrayList<String> festivalSpeech = new ArrayList<String>();
-			festivalSpeech.add(speech);
-			Files.write(tempSCMFilePath, festivalSpeech, StandardCharsets.ISO_8859_1, StandardOpenOption.WRITE);			
-
-			//return result for passing it as a file input for Festival
-			return tempSCMFilePath;
-
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
-		return null;
-	}
-
 	/**
 	 * Write the SCM code to the voice files in ./.festival/voice folder
 	 */
@@ -255,11 +284,11 @@ public class SpeechAndSoundModel {
 		}
 	}
 
-	private Path getCurrentVoiceFilePath() {
+	private Path getVoiceFilePath(Voice voice) {
 
 		Path accentVoiceFilePath = null;
 
-		switch(_currentVoice) {
+		switch(voice) {
 		case AMERICAN:
 			accentVoiceFilePath = _americanVoiceFilePath;
 			break;
@@ -278,11 +307,12 @@ public class SpeechAndSoundModel {
 	/**
 	 * A runnable object that ensures Festival speeches and sound effects do not overlap
 	 */
-	private class SoundModelWorker implements Runnable {
+	private class SoundModelWorker extends SoundJob {
 
 		String _festivalCommand;
 
-		public SoundModelWorker(String festivalCommand) {
+		public SoundModelWorker(String festivalCommand, SoundPriority priority) {
+			super(priority);
 			_festivalCommand = festivalCommand;
 		}
 
@@ -292,7 +322,165 @@ public class SpeechAndSoundModel {
 			Process process;
 			try {
 				process = pb.start();
-				process.waitFor();
+				waitForProcess(process);
+				process.destroy();
+			} catch (IOException e) {
+				e.printStackTrace();
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	public long getSpeechCacheHitCount() {
+		return _speechCache.getNumOfHits();
+	}
+
+	public long getSpeechCacheMissCount() {
+		return _speechCache.getNumOfMisses();
+	}
+
+	/**
+	 * Returns true if the phrase is already in the speech cache. Does not count towards the hit/miss counters.
+	 */
+	boolean isCached(Phrase phrase) throws IOException {
+		return _speechCache.contains(getCacheKey(phrase));
+	}
+
+	/**
+	 * Returns how many bytes of the speech cache are taken up by pre-warmed speeches that have not been played yet
+	 */
+	long getPrewarmedCacheSizeBytes() {
+		return _speechCache.getPrewarmedSizeBytes();
+	}
+
+	/**
+	 * Renders the phrase to a WAV file in the speech cache using the given Festival server.
+	 * The quiz's own server is used for phrases the user is waiting for, while prefetching and pre-warming use servers of their own.
+	 * @param prewarmed whether the phrase is being rendered by pre-warming (see SpeechCache.addWaveFile())
+	 * @return the WAV file in the cache
+	 */
+	Path renderToCache(Phrase phrase, FestivalServer festivalServer, boolean prewarmed) throws IOException {
+		String key = getCacheKey(phrase);
+
+		Path tempWaveFilePath = _speechCache.createTempWaveFile();
+		try {
+			List<String> commands = getVoiceCommands(phrase._voice, phrase._slowPaced);
+			commands.add("(utt.save.wave (utt.synth (Utterance Text \"" + phrase._text + "\")) \""
+					+ tempWaveFilePath.toAbsolutePath().toString() + "\" 'riff)");
+			if (!festivalServer.evaluate(commands)) {
+				throw new IOException("Festival could not render \"" + phrase._text + "\"");
+			}
+			return _speechCache.addWaveFile(key, tempWaveFilePath, prewarmed);
+		} finally {
+			Files.deleteIfExists(tempWaveFilePath);
+		}
+	}
+
+	/**
+	 * Returns the Scheme commands that set up the voice and pace.
+	 * A Festival server remembers the voice and pace from the previous phrase, so both are always set.
+	 */
+	private List<String> getVoiceCommands(Voice voice, boolean slowPaced) throws IOException {
+		List<String> commands = new ArrayList<String>();
+		commands.addAll(Files.readAllLines(getVoiceFilePath(voice), StandardCharsets.ISO_8859_1));
+		commands.addAll(getPaceCommands(slowPaced));
+		return commands;
+	}
+
+	private List<String> getPaceCommands(boolean slowPaced) throws IOException {
+		List<String> paceCommands = new ArrayList<String>();
+		if (slowPaced) {
+			paceCommands.addAll(Files.readAllLines(_slowPacedVoiceFilePath, StandardCharsets.ISO_8859_1));
+		} else {
+			paceCommands.add(NORMAL_PACED_VOICE_SCM_CMD);
+		}
+		return paceCommands;
+	}
+
+	String getCacheKey(Phrase phrase) throws IOException {
+		return SpeechCache.getKey(phrase._voice, String.join("\n", getPaceCommands(phrase._slowPaced)), phrase._text);
+	}
+
+	/**
+	 * A runnable object that plays a speech.
+	 * The speech is assembled from the WAV files of its phrases in the SpeechCache. Phrases that are not cached yet are rendered
+	 * to the cache by the Festival server first.
+	 * Runs on the same single thread as SoundModelWorker, so speeches do not overlap each other or a sound effect played by mpg123.
+	 * A speech can also be made to wait for a sound effect that is playing in memory, e.g. the faulted speech after the wrong answer sound.
+	 * If the speech cannot be rendered or played, falls back to piping this speech to a Festival process of its own.
+	 * If the job is cancelled while the speech is being rendered, the speech is still added to the cache but is not played.
+	 */
+	private class FestivalSpeechWorker extends SoundJob {
+
+		Speech _speech;
+		CountDownLatch _soundFXFinished; //the sound effect that must finish before the speech is played, if any
+
+		public FestivalSpeechWorker(Speech speech, SoundPriority priority) {
+			this(speech, priority, new CountDownLatch(0));
+		}
+
+		public FestivalSpeechWorker(Speech speech, SoundPriority priority, CountDownLatch soundFXFinished) {
+			super(priority);
+			_speech = speech;
+			_soundFXFinished = soundFXFinished;
+		}
+
+		@Override
+		public void run() {
+			try {
+				List<Path> waveFilePaths = new ArrayList<Path>();
+				for (Phrase phrase : _speech._phrases) {
+					waveFilePaths.add(getWaveFile(phrase));
+				}
+				//The speech is rendered while the sound effect plays. Do not wait forever, in case the sound effect never reports that it stopped.
+				_soundFXFinished.await(MAX_SOUND_FX_MILLIS, TimeUnit.MILLISECONDS);
+				if (isCancelled()) {
+					return;
+				}
+				WavePlayer.play(waveFilePaths, _speech._pausesMillis, this);
+			} catch (IOException e) {
+				e.printStackTrace();
+				if (!isCancelled()) {
+					sayThroughPipe();
+				}
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			}
+		}
+
+		private Path getWaveFile(Phrase phrase) throws IOException, InterruptedException {
+			String key = getCacheKey(phrase);
+			if (!_speechCache.contains(key)) {
+				//The phrase may be being prefetched right now, in which case it is quicker to wait for it than to render it again
+				_speechPrefetcher.awaitPrefetch(key);
+			}
+			Path waveFilePath = _speechCache.getWaveFile(key);
+			if (waveFilePath == null) {
+				waveFilePath = renderToCache(phrase, _festivalServer, false);
+			}
+			return waveFilePath;
+		}
+
+		/**
+		 * Starts Festival just for this speech and streams the Scheme commands to it through its standard input,
+		 * so that no temporary SCM files are needed.
+		 */
+		private void sayThroughPipe() {
+			try {
+				List<String> commands = getVoiceCommands(_speech._voice, _speech._slowPaced);
+				commands.add("(SayText \"" + _speech._text + "\")");
+
+				ProcessBuilder pb = new ProcessBuilder("festival", "--pipe");
+				pb.redirectErrorStream(true);
+				pb.redirectOutput(new File("/dev/null"));
+				Process process = pb.start();
+				try (Writer toFestival = new OutputStreamWriter(process.getOutputStream(), StandardCharsets.ISO_8859_1)) {
+					for (String command : commands) {
+						toFestival.write(command + "\n");
+					}
+				}
+				waitForProcess(process);
 				process.destroy();
 			} catch (IOException e) {
 				e.printStackTrace();
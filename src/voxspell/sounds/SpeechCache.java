@@ -0,0 +1,252 @@
+package voxspell.sounds;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import voxspell.sounds.SpeechAndSoundModel.Voice;
+
+/**
+ * An on-disk cache of synthesised speeches, stored as WAV files in ./.festival/cache.
+ * A speech only depends on the voice, the speaking pace (Duration_Stretch) and the text, so each WAV file is named after
+ * a hash of those three and can be played again without asking Festival to synthesise it.
+ * The cache is bounded in size: when it grows past the limit, the least recently played speeches are deleted first.
+ * The last modified time of each file is used as its last played time, so the LRU order survives restarts of the application.
+ * Speeches rendered by pre-warming are kept with a file extension of their own until they are first played,
+ * so that how much of the cache they fill is known (see getPrewarmedSizeBytes()), also after a restart.
+ * @author echa232
+ *
+ */
+class SpeechCache {
+
+	private static final long MAX_CACHE_SIZE_BYTES = 256L * 1024 * 1024; //enough for every speech of a few hundred words
+	//How much of the cache pre-warmed speeches that have not been played yet may fill, leaving the rest for the speeches the quiz plays,
+	//so a long word list does not evict its own pre-warmed speeches
+	static final long PREWARM_BUDGET_BYTES = MAX_CACHE_SIZE_BYTES / 2;
+	private static final String WAVE_FILE_EXTENSION = ".wav";
+	private static final String PREWARMED_WAVE_FILE_EXTENSION = ".prewarmed.wav";
+
+	private Path _cacheFolderPath;
+
+	//Key -> file size in bytes. Access ordered, so iteration starts at the least recently played speech.
+	private LinkedHashMap<String, Long> _cachedSpeeches;
+	private long _cacheSizeBytes;
+
+	private HashSet<String> _prewarmedSpeeches; //keys of the pre-warmed speeches that have not been played yet
+	private long _prewarmedSizeBytes;
+
+	private long _numOfHits;
+	private long _numOfMisses;
+
+	SpeechCache(Path cacheFolderPath) {
+		_cacheFolderPath = cacheFolderPath;
+		_cachedSpeeches = new LinkedHashMap<String, Long>(16, 0.75f, true);
+		_prewarmedSpeeches = new HashSet<String>();
+		load();
+	}
+
+	/**
+	 * Finds the speeches that are already in the cache folder, oldest played first.
+	 * Temporary files left behind by a render that did not finish are deleted.
+	 */
+	private void load() {
+		try {
+			Files.createDirectories(_cacheFolderPath);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return;
+		}
+
+		File[] files = _cacheFolderPath.toFile().listFiles();
+		if (files == null) {
+			return;
+		}
+		Arrays.sort(files, new Comparator<File>() {
+			@Override
+			public int compare(File f1, File f2) {
+				return Long.compare(f1.lastModified(), f2.lastModified());
+			}
+		});
+		for (File file : files) {
+			String fileName = file.getName();
+			if (fileName.endsWith(PREWARMED_WAVE_FILE_EXTENSION)) {
+				String key = fileName.substring(0, fileName.length() - PREWARMED_WAVE_FILE_EXTENSION.length());
+				_cachedSpeeches.put(key, file.length());
+				_cacheSizeBytes += file.length();
+				_prewarmedSpeeches.add(key);
+				_prewarmedSizeBytes += file.length();
+			} else if (fileName.endsWith(WAVE_FILE_EXTENSION)) {
+				String key = fileName.substring(0, fileName.length() - WAVE_FILE_EXTENSION.length());
+				_cachedSpeeches.put(key, file.length());
+				_cacheSizeBytes += file.length();
+			} else {
+				file.delete();
+			}
+		}
+		evictIfNeeded();
+	}
+
+	/**
+	 * Returns the key that the speech is cached under.
+	 * @param paceCommand the Scheme command that sets the speaking pace (Duration_Stretch)
+	 */
+	static String getKey(Voice voice, String paceCommand, String text) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			String keyText = voice.name() + "\n" + paceCommand + "\n" + text;
+			byte[] hash = digest.digest(keyText.getBytes(StandardCharsets.UTF_8));
+
+			StringBuilder key = new StringBuilder();
+			for (byte b : hash) {
+				key.append(String.format("%02x", b));
+			}
+			return key.toString();
+		} catch (NoSuchAlgorithmException e) {
+			//Every Java platform is required to support SHA-1
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Returns the WAV file of the speech, or null if the speech is not cached (yet).
+	 * Counts towards the hit/miss counters, and marks the speech as the most recently played one.
+	 * A pre-warmed speech stops counting as pre-warmed once it has been played.
+	 */
+	synchronized Path getWaveFile(String key) {
+		Long size = _cachedSpeeches.get(key);
+		if (size == null) {
+			_numOfMisses++;
+			return null;
+		}
+		Path waveFilePath = getWaveFilePath(key);
+		if (Files.notExists(waveFilePath)) {
+			//deleted from outside of the application
+			_cacheSizeBytes -= _cachedSpeeches.remove(key);
+			forgetPrewarmed(key, size);
+			_numOfMisses++;
+			return null;
+		}
+		_numOfHits++;
+		if (_prewarmedSpeeches.contains(key)) {
+			try {
+				Path playedWaveFilePath = _cacheFolderPath.resolve(key + WAVE_FILE_EXTENSION);
+				Files.move(waveFilePath, playedWaveFilePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				forgetPrewarmed(key, size);
+				waveFilePath = playedWaveFilePath;
+			} catch (IOException e) {
+				//still playable where it is, and counted as pre-warmed until the next time it is played
+				e.printStackTrace();
+			}
+		}
+		try {
+			Files.setLastModifiedTime(waveFilePath, FileTime.fromMillis(System.currentTimeMillis()));
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return waveFilePath;
+	}
+
+	/**
+	 * Returns true if the speech is in the cache, without counting towards the hit/miss counters or changing the LRU order.
+	 */
+	synchronized boolean contains(String key) {
+		return _cachedSpeeches.containsKey(key) && Files.exists(getWaveFilePath(key));
+	}
+
+	/**
+	 * Returns a new, empty file in the cache folder that a speech can be rendered to before it is added with addWaveFile().
+	 */
+	Path createTempWaveFile() throws IOException {
+		Files.createDirectories(_cacheFolderPath);
+		return Files.createTempFile(_cacheFolderPath, "render", ".tmp");
+	}
+
+	/**
+	 * Moves the rendered WAV file into the cache under the given key, evicting the least recently played speeches if the cache is too big.
+	 * @param prewarmed whether the speech was rendered by pre-warming, in which case it counts towards getPrewarmedSizeBytes() until it is played
+	 * (unless it was already in the cache as a speech that has been played)
+	 * @return the WAV file in the cache
+	 */
+	synchronized Path addWaveFile(String key, Path renderedWaveFilePath, boolean prewarmed) throws IOException {
+		Long oldSize = _cachedSpeeches.get(key);
+		if (oldSize != null) {
+			if (_prewarmedSpeeches.contains(key)) {
+				Files.deleteIfExists(getWaveFilePath(key));
+				forgetPrewarmed(key, oldSize);
+			} else {
+				prewarmed = false;
+			}
+		}
+
+		Path waveFilePath = _cacheFolderPath.resolve(key + (prewarmed ? PREWARMED_WAVE_FILE_EXTENSION : WAVE_FILE_EXTENSION));
+		Files.move(renderedWaveFilePath, waveFilePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		long size = Files.size(waveFilePath);
+		if (oldSize != null) {
+			_cacheSizeBytes -= oldSize;
+		}
+		_cachedSpeeches.put(key, size);
+		_cacheSizeBytes += size;
+		if (prewarmed) {
+			_prewarmedSpeeches.add(key);
+			_prewarmedSizeBytes += size;
+		}
+
+		evictIfNeeded();
+		return waveFilePath;
+	}
+
+	/**
+	 * Returns how many bytes of the cache are taken up by pre-warmed speeches that have not been played yet
+	 */
+	synchronized long getPrewarmedSizeBytes() {
+		return _prewarmedSizeBytes;
+	}
+
+	synchronized long getNumOfHits() {
+		return _numOfHits;
+	}
+
+	synchronized long getNumOfMisses() {
+		return _numOfMisses;
+	}
+
+	private void evictIfNeeded() {
+		Iterator<Map.Entry<String, Long>> iterator = _cachedSpeeches.entrySet().iterator();
+		//Always keep the most recently played speech, even if it alone is bigger than the limit
+		while (_cacheSizeBytes > MAX_CACHE_SIZE_BYTES && _cachedSpeeches.size() > 1) {
+			Map.Entry<String, Long> leastRecentlyPlayed = iterator.next();
+			try {
+				Files.deleteIfExists(getWaveFilePath(leastRecentlyPlayed.getKey()));
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			_cacheSizeBytes -= leastRecentlyPlayed.getValue();
+			forgetPrewarmed(leastRecentlyPlayed.getKey(), leastRecentlyPlayed.getValue());
+			iterator.remove();
+		}
+	}
+
+	private void forgetPrewarmed(String key, long size) {
+		if (_prewarmedSpeeches.remove(key)) {
+			_prewarmedSizeBytes -= size;
+		}
+	}
+
+	private Path getWaveFilePath(String key) {
+		String extension = _prewarmedSpeeches.contains(key) ? PREWARMED_WAVE_FILE_EXTENSION : WAVE_FILE_EXTENSION;
+		return _cacheFolderPath.resolve(key + extension);
+	}
+}
@@ -0,0 +1,112 @@
+package voxspell.sounds;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SpeechPrefetcher speculatively renders speeches that the quiz is likely to need soon (e.g. the prompt for the next word)
+ * into the speech cache, while the user is still spelling the current word.
+ * Prefetching uses a Festival server of its own on a single low priority thread, so that it never holds up the speech the user is waiting for.
+ * The speeches are asked for a word at a time. Only the speeches of the latest word wait to be rendered:
+ * when a new word's speeches are asked for, the ones still waiting from an earlier word are dropped, as they are out of date.
+ * @author echa232
+ *
+ */
+class SpeechPrefetcher {
+
+	private static final int MAX_WAITING_JOBS = 2; //the faulted speech of the current word and the prompt of the next word
+
+	private SpeechAndSoundModel _speechModel;
+	private FestivalServer _festivalServer;
+	private ThreadPoolExecutor _executor;
+
+	private HashSet<String> _keysBeingRendered; //cache keys of the phrases that are being rendered right now
+
+	SpeechPrefetcher(SpeechAndSoundModel speechModel, Path serverConfigFilePath) {
+		_speechModel = speechModel;
+		_festivalServer = new FestivalServer(serverConfigFilePath);
+		_keysBeingRendered = new HashSet<String>();
+
+		_executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(MAX_WAITING_JOBS),
+				new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "SpeechPrefetcher");
+						thread.setDaemon(true);
+						thread.setPriority(Thread.MIN_PRIORITY);
+						return thread;
+					}
+				},
+				new ThreadPoolExecutor.DiscardOldestPolicy());
+	}
+
+	/**
+	 * Renders the phrases of the speeches that are not cached yet into the speech cache in the background,
+	 * in place of any speeches that are still waiting from the previous word (the one being rendered is finished first).
+	 * At most MAX_WAITING_JOBS speeches can be asked for at once.
+	 */
+	synchronized void prefetch(List<Speech> speeches) {
+		_executor.getQueue().clear();
+		for (Speech speech : speeches) {
+			_executor.execute(new PrefetchJob(speech));
+		}
+	}
+
+	/**
+	 * If the phrase with the given cache key is being prefetched right now, blocks until it has been rendered,
+	 * so that the same phrase is not rendered twice at the same time.
+	 */
+	synchronized void awaitPrefetch(String key) throws InterruptedException {
+		while (_keysBeingRendered.contains(key)) {
+			wait();
+		}
+	}
+
+	private synchronized void renderStarted(String key) {
+		_keysBeingRendered.add(key);
+	}
+
+	private synchronized void renderFinished(String key) {
+		_keysBeingRendered.remove(key);
+		notifyAll();
+	}
+
+	/**
+	 * A runnable object that renders the phrases of a single speech into the speech cache
+	 */
+	private class PrefetchJob implements Runnable {
+
+		Speech _speech;
+
+		public PrefetchJob(Speech speech) {
+			_speech = speech;
+		}
+
+		@Override
+		public void run() {
+			try {
+				for (Phrase phrase : _speech._phrases) {
+					if (_speechModel.isCached(phrase)) {
+						continue;
+					}
+					String key = _speechModel.getCacheKey(phrase);
+					renderStarted(key);
+					try {
+						_speechModel.renderToCache(phrase, _festivalServer, false);
+					} finally {
+						renderFinished(key);
+					}
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+}
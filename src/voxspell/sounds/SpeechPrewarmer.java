@@ -0,0 +1,367 @@
+package voxspell.sounds;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * SpeechPrewarmer renders every speech the quiz can say for a word (the prompt, the relisten and the faulted speech, in every voice)
+ * into the speech cache in the background, so that the first quiz on a newly added word does not have to wait for Festival.
+ * The words are shared out between a pool of workers, one per available core, and each worker has a Festival server of its own.
+ * The words that have not been pre-warmed yet are saved to a file as the work goes on, so that unfinished work is resumed
+ * the next time the application is started (see resumeUnfinishedPrewarmInBackground()).
+ * Pre-warmed speeches that have not been played yet may only fill SpeechCache.PREWARM_BUDGET_BYTES of the speech cache,
+ * as any more would only evict the speeches pre-warmed first. Once that is full, the words left over are skipped:
+ * the listeners are told how many, and the words are kept with the unfinished words, to be tried again the next time words are pre-warmed
+ * or the application is started, by when the quiz may have played (or the cache evicted) some of the pre-warmed speeches.
+ * The Singleton design pattern is applied so that only one pool of workers is ever running.
+ * @author echa232
+ *
+ */
+public class SpeechPrewarmer {
+
+	/**
+	 * Listener interface for objects that want to show the progress of the pre-warming (e.g. a progress bar).
+	 * The methods are always called on the EDT.
+	 * @author echa232
+	 *
+	 */
+	public interface SpeechPrewarmerListener {
+		void prewarmProgressed(int numOfWordsDone, int numOfWords);
+		void prewarmFinished(boolean cancelled, int numOfWordsSkipped);
+	}
+
+	private static final int SAVE_PROGRESS_INTERVAL = 10; //number of words done between saves of the unfinished words
+
+	private static SpeechPrewarmer _prewarmer;
+
+	private SpeechAndSoundModel _speechModel;
+
+	private Path _prewarmFolderPath;
+	private Path _unfinishedWordsFilePath;
+
+	private int _numOfWorkers;
+	private FestivalServer[] _festivalServers; //one per worker, reused every time the workers are started
+
+	private ExecutorService _workerPool; //null when no workers are running
+	private int _numOfRunningWorkers;
+
+	private ArrayDeque<String> _wordsToStart; //words no worker has started on yet
+	private LinkedHashSet<String> _unfinishedWords; //words that have not been finished yet, including those being worked on
+	private LinkedHashSet<String> _skippedWords; //words that were not started as the pre-warm budget was full
+	private int _numOfWords;
+	private int _numOfWordsDone;
+	private boolean _cancelled;
+
+	//Bytes rendered by pre-warming since the application started, and the number of words they were for, to estimate the size of the next word
+	private long _numOfBytesRendered;
+	private int _numOfWordsRendered;
+
+	private List<SpeechPrewarmerListener> _listeners;
+
+	private SpeechPrewarmer() {
+		//Sets up the ./.festival folder (if it does not exist yet) before the pre-warming files are put inside it
+		_speechModel = SpeechAndSoundModel.getInstance();
+
+		_prewarmFolderPath = Paths.get("./.festival/prewarm");
+		_unfinishedWordsFilePath = _prewarmFolderPath.resolve("UnfinishedWords");
+
+		_numOfWorkers = Runtime.getRuntime().availableProcessors();
+		_festivalServers = new FestivalServer[_numOfWorkers];
+		for (int i = 0; i < _numOfWorkers; i++) {
+			_festivalServers[i] = new FestivalServer(_prewarmFolderPath.resolve("server" + i + ".scm"));
+		}
+
+		_wordsToStart = new ArrayDeque<String>();
+		_unfinishedWords = new LinkedHashSet<String>();
+		_skippedWords = new LinkedHashSet<String>();
+		_listeners = new ArrayList<SpeechPrewarmerListener>();
+	}
+
+	public static synchronized SpeechPrewarmer getInstance() {
+		if (_prewarmer == null) {
+			_prewarmer = new SpeechPrewarmer();
+		}
+		return _prewarmer;
+	}
+
+	public synchronized void addListener(SpeechPrewarmerListener listener) {
+		_listeners.add(listener);
+	}
+
+	public synchronized void removeListener(SpeechPrewarmerListener listener) {
+		_listeners.remove(listener);
+	}
+
+	/**
+	 * Adds the words to the words being pre-warmed, starting the workers if they are not running already.
+	 * Words that are already waiting to be pre-warmed are not added twice. The words skipped earlier are tried again first.
+	 */
+	public synchronized void prewarm(Collection<String> words) {
+		_unfinishedWords.addAll(_skippedWords);
+		_wordsToStart.addAll(_skippedWords);
+		_numOfWords += _skippedWords.size();
+		_skippedWords.clear();
+
+		for (String word : words) {
+			if (word.length() == 0 || !_unfinishedWords.add(word)) {
+				continue;
+			}
+			_wordsToStart.add(word);
+			_numOfWords++;
+		}
+		_cancelled = false;
+		saveUnfinishedWords();
+
+		if (_wordsToStart.isEmpty()) {
+			return;
+		}
+		notifyProgress();
+		if (_workerPool == null) {
+			startWorkers();
+		}
+	}
+
+	/**
+	 * Stops pre-warming. Words that are part-way through are abandoned, and nothing is resumed the next time the application starts.
+	 */
+	public synchronized void cancel() {
+		clearWords();
+		_cancelled = true;
+		saveUnfinishedWords();
+		if (_workerPool == null) {
+			notifyFinished();
+		}
+	}
+
+	public synchronized boolean isRunning() {
+		return _workerPool != null;
+	}
+
+	/**
+	 * Continues pre-warming the words that were left unfinished (or skipped) when the application was last closed.
+	 * The words are read on a low priority background thread, so that a long list does not hold up the application starting.
+	 */
+	public void resumeUnfinishedPrewarmInBackground() {
+		Thread resumeThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				if (Files.notExists(_unfinishedWordsFilePath)) {
+					return;
+				}
+				try {
+					prewarm(Files.readAllLines(_unfinishedWordsFilePath, StandardCharsets.ISO_8859_1));
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}, "SpeechPrewarmer resume");
+		resumeThread.setDaemon(true);
+		resumeThread.setPriority(Thread.MIN_PRIORITY);
+		resumeThread.start();
+	}
+
+	private void clearWords() {
+		_wordsToStart.clear();
+		_unfinishedWords.clear();
+		_skippedWords.clear();
+		_numOfWords = 0;
+		_numOfWordsDone = 0;
+	}
+
+	private void startWorkers() {
+		_workerPool = Executors.newFixedThreadPool(_numOfWorkers, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "SpeechPrewarmer worker");
+				thread.setDaemon(true);
+				thread.setPriority(Thread.MIN_PRIORITY); //the quiz's own speech always comes first
+				return thread;
+			}
+		});
+		_numOfRunningWorkers = _numOfWorkers;
+		for (int i = 0; i < _numOfWorkers; i++) {
+			_workerPool.execute(new PrewarmWorker(_festivalServers[i]));
+		}
+	}
+
+	/**
+	 * Returns the next word for a worker to pre-warm, or null if there are none left, in which case the worker must stop.
+	 */
+	private synchronized String takeNextWord() {
+		if (isPrewarmBudgetUsedUp(_unfinishedWords.size() - _wordsToStart.size())) {
+			skipWordsToStart();
+		}
+		String word = _wordsToStart.poll();
+		if (word == null) {
+			workerStopped();
+		}
+		return word;
+	}
+
+	/**
+	 * Returns true if pre-warming another word would probably take the pre-warmed speeches in the speech cache past the budget,
+	 * going by the average size of the words rendered so far and counting the words that are still being worked on.
+	 */
+	private boolean isPrewarmBudgetUsedUp(int numOfWordsInProgress) {
+		long averageBytesPerWord = (_numOfWordsRendered == 0) ? 0 : _numOfBytesRendered / _numOfWordsRendered;
+		long projectedSizeBytes = _speechModel.getPrewarmedCacheSizeBytes() + averageBytesPerWord * (numOfWordsInProgress + 1);
+		return projectedSizeBytes > SpeechCache.PREWARM_BUDGET_BYTES;
+	}
+
+	/**
+	 * Skips the words no worker has started on yet. They are still saved with the unfinished words, and are tried again by the next prewarm().
+	 */
+	private void skipWordsToStart() {
+		if (_wordsToStart.isEmpty()) {
+			return;
+		}
+		_unfinishedWords.removeAll(_wordsToStart);
+		_skippedWords.addAll(_wordsToStart);
+		_numOfWords -= _wordsToStart.size();
+		_wordsToStart.clear();
+		saveUnfinishedWords();
+		notifyProgress();
+	}
+
+	private synchronized boolean isUnfinished(String word) {
+		return _unfinishedWords.contains(word);
+	}
+
+	private synchronized void wordDone(String word, long numOfBytesRendered) {
+		_numOfBytesRendered += numOfBytesRendered;
+		_numOfWordsRendered++;
+		if (!_unfinishedWords.remove(word)) {
+			return; //cancelled while the word was being worked on
+		}
+		_numOfWordsDone++;
+		if (_numOfWordsDone % SAVE_PROGRESS_INTERVAL == 0) {
+			saveUnfinishedWords();
+		}
+		notifyProgress();
+	}
+
+	/**
+	 * Called by a worker when it stops, either because there are no words left or because Festival could not be used.
+	 * When the last worker stops, the Festival servers are shut down and the listeners are told that pre-warming has finished.
+	 */
+	private synchronized void workerStopped() {
+		_numOfRunningWorkers--;
+		if (_numOfRunningWorkers > 0) {
+			return;
+		}
+		_workerPool.shutdown();
+		_workerPool = null;
+		for (FestivalServer festivalServer : _festivalServers) {
+			festivalServer.shutdown();
+		}
+		saveUnfinishedWords();
+		notifyFinished();
+	}
+
+	/**
+	 * Saves the unfinished and skipped words so that they can be resumed. The file is deleted once there are none left.
+	 */
+	private void saveUnfinishedWords() {
+		try {
+			if (_unfinishedWords.isEmpty() && _skippedWords.isEmpty()) {
+				Files.deleteIfExists(_unfinishedWordsFilePath);
+			} else {
+				List<String> wordsToResume = new ArrayList<String>(_unfinishedWords);
+				wordsToResume.addAll(_skippedWords);
+				Files.createDirectories(_prewarmFolderPath);
+				Files.write(_unfinishedWordsFilePath, wordsToResume, StandardCharsets.ISO_8859_1);
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private void notifyProgress() {
+		final int numOfWordsDone = _numOfWordsDone;
+		final int numOfWords = _numOfWords;
+		final List<SpeechPrewarmerListener> listeners = new ArrayList<SpeechPrewarmerListener>(_listeners);
+		SwingUtilities.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				for (SpeechPrewarmerListener listener : listeners) {
+					listener.prewarmProgressed(numOfWordsDone, numOfWords);
+				}
+			}
+		});
+	}
+
+	private void notifyFinished() {
+		final boolean cancelled = _cancelled;
+		final int numOfWordsSkipped = _skippedWords.size();
+		final List<SpeechPrewarmerListener> listeners = new ArrayList<SpeechPrewarmerListener>(_listeners);
+		SwingUtilities.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				for (SpeechPrewarmerListener listener : listeners) {
+					listener.prewarmFinished(cancelled, numOfWordsSkipped);
+				}
+			}
+		});
+	}
+
+	/**
+	 * A runnable object that keeps taking words and rendering all of the phrases of their speeches into the speech cache until there are no words left.
+	 */
+	private class PrewarmWorker implements Runnable {
+
+		FestivalServer _festivalServer;
+
+		public PrewarmWorker(FestivalServer festivalServer) {
+			_festivalServer = festivalServer;
+		}
+
+		@Override
+		public void run() {
+			String word;
+			while ((word = takeNextWord()) != null) {
+				try {
+					long numOfBytesRendered = 0;
+					for (Phrase phrase : Speech.getAllPhrasesOfWord(word)) {
+						if (!isUnfinished(word)) {
+							break; //cancelled
+						}
+						if (!_speechModel.isCached(phrase)) {
+							Path waveFilePath = _speechModel.renderToCache(phrase, _festivalServer, true);
+							numOfBytesRendered += getSize(waveFilePath);
+						}
+					}
+					wordDone(word, numOfBytesRendered);
+				} catch (IOException e) {
+					//Festival cannot be used, so leave the word unfinished (it will be resumed next time) and stop this worker
+					e.printStackTrace();
+					workerStopped();
+					return;
+				}
+			}
+		}
+
+		/**
+		 * Returns the size of the WAV file, or 0 if it has already been evicted from the cache by the quiz's own speeches
+		 */
+		private long getSize(Path waveFilePath) {
+			try {
+				return Files.size(waveFilePath);
+			} catch (IOException e) {
+				return 0;
+			}
+		}
+	}
+}
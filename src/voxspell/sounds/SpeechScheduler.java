@@ -0,0 +1,107 @@
+package voxspell.sounds;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+
+/**
+ * Plays the queued speeches and sound effects one at a time on a single thread, so that they never talk over each other.
+ * Unlike a plain single-thread executor, jobs are played in order of priority (feedback sound effects first, then prompts,
+ * then relistens), and speeches that have been superseded can be cancelled, including the one that is currently playing.
+ * @author echa232
+ *
+ */
+class SpeechScheduler {
+
+	/**
+	 * The priorities of jobs, highest priority first
+	 * @author echa232
+	 *
+	 */
+	enum SoundPriority {
+		FEEDBACK, PROMPT, RELISTEN
+	}
+
+	private PriorityQueue<SoundJob> _queue;
+	private long _nextSequenceNumber;
+	private SoundJob _currentJob; //null when nothing is playing
+
+	SpeechScheduler() {
+		_queue = new PriorityQueue<SoundJob>(11, new Comparator<SoundJob>() {
+			@Override
+			public int compare(SoundJob job1, SoundJob job2) {
+				int priorityComparison = job1._priority.compareTo(job2._priority);
+				if (priorityComparison != 0) {
+					return priorityComparison;
+				}
+				return Long.compare(job1._sequenceNumber, job2._sequenceNumber);
+			}
+		});
+
+		Thread playerThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				playJobs();
+			}
+		}, "SpeechScheduler");
+		playerThread.setDaemon(true);
+		playerThread.start();
+	}
+
+	synchronized void schedule(SoundJob job) {
+		job._sequenceNumber = _nextSequenceNumber++;
+		_queue.add(job);
+		notifyAll();
+	}
+
+	/**
+	 * Cancels every speech (prompts and relistens), both the ones waiting to be played and the one that is playing.
+	 * Feedback sound effects are left to play.
+	 */
+	synchronized void cancelSpeech() {
+		Iterator<SoundJob> iterator = _queue.iterator();
+		while (iterator.hasNext()) {
+			SoundJob job = iterator.next();
+			if (job._priority != SoundPriority.FEEDBACK) {
+				job.cancel();
+				iterator.remove();
+			}
+		}
+		if (_currentJob != null && _currentJob._priority != SoundPriority.FEEDBACK) {
+			_currentJob.cancel();
+		}
+	}
+
+	/**
+	 * Returns the number of jobs waiting to be played, not counting the one that is playing.
+	 */
+	synchronized int getQueueDepth() {
+		return _queue.size();
+	}
+
+	private synchronized SoundJob takeNextJob() throws InterruptedException {
+		_currentJob = null;
+		while (_queue.isEmpty()) {
+			wait();
+		}
+		_currentJob = _queue.poll();
+		return _currentJob;
+	}
+
+	private void playJobs() {
+		while (true) {
+			try {
+				SoundJob job = takeNextJob();
+				if (!job.isCancelled()) {
+					job.run();
+				}
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+				return;
+			} catch (RuntimeException e) {
+				//A broken job must not stop the jobs after it from being played
+				e.printStackTrace();
+			}
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package voxspell.sounds;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.DataLine;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+/**
+ * Plays WAV files in-process through javax.sound.sampled, instead of starting an external player for every sound.
+ * Several WAV files can be joined together at the PCM level, with silence in between, and played as one sound.
+ * @author echa232
+ *
+ */
+class WavePlayer {
+
+	private static final int BUFFER_SIZE = 4096;
+
+	private WavePlayer() {
+	}
+
+	/**
+	 * Joins the WAV files together, with the given length of silence before each of them, and plays them as one sound.
+	 * Blocks until it has finished playing, or until the job is cancelled.
+	 * @throws IOException if a file could not be read, the files are not all in the same audio format, or no audio line is available
+	 */
+	static void play(List<Path> waveFilePaths, List<Integer> pausesMillis, SoundJob job) throws IOException {
+		AudioFormat format = null;
+		ByteArrayOutputStream pcmData = new ByteArrayOutputStream();
+
+		for (int i = 0; i < waveFilePaths.size(); i++) {
+			try (AudioInputStream audioStream = AudioSystem.getAudioInputStream(waveFilePaths.get(i).toFile())) {
+				if (format == null) {
+					format = audioStream.getFormat();
+				} else if (!format.matches(audioStream.getFormat())) {
+					throw new IOException("Cannot join " + waveFilePaths.get(i) + " as its audio format is different");
+				}
+				if (i > 0 || pausesMillis.get(i) > 0) {
+					writeSilence(pcmData, format, pausesMillis.get(i));
+				}
+
+				byte[] buffer = new byte[BUFFER_SIZE];
+				int numOfBytesRead;
+				while ((numOfBytesRead = audioStream.read(buffer, 0, buffer.length)) != -1) {
+					pcmData.write(buffer, 0, numOfBytesRead);
+				}
+			} catch (UnsupportedAudioFileException e) {
+				throw new IOException("Could not read " + waveFilePaths.get(i), e);
+			}
+		}
+
+		playPCMData(pcmData.toByteArray(), format, job);
+	}
+
+	private static void writeSilence(ByteArrayOutputStream pcmData, AudioFormat format, int millis) {
+		int numOfFrames = (int) (format.getFrameRate() * millis / 1000);
+		byte[] silence = new byte[numOfFrames * format.getFrameSize()];
+		if (format.getEncoding() == AudioFormat.Encoding.PCM_UNSIGNED) {
+			Arrays.fill(silence, (byte) 0x80); //the middle of the range is silent for unsigned samples
+		}
+		pcmData.write(silence, 0, silence.length);
+	}
+
+	private static void playPCMData(byte[] pcmData, AudioFormat format, SoundJob job) throws IOException {
+		try {
+			SourceDataLine line = (SourceDataLine) AudioSystem.getLine(new DataLine.Info(SourceDataLine.class, format));
+			try {
+				line.open(format);
+				line.start();
+
+				//Whole frames only, so that a frame is never split between two writes
+				int chunkSize = Math.max(format.getFrameSize(), BUFFER_SIZE - BUFFER_SIZE % format.getFrameSize());
+				for (int offset = 0; offset < pcmData.length; offset += chunkSize) {
+					if (job.isCancelled()) {
+						//Stop straight away, throwing away the audio that has not been heard yet
+						line.stop();
+						line.flush();
+						return;
+					}
+					line.write(pcmData, offset, Math.min(chunkSize, pcmData.length - offset));
+				}
+				line.drain();
+			} finally {
+				line.close();
+			}
+		} catch (LineUnavailableException | IllegalArgumentException e) {
+			throw new IOException("Could not play audio in the format " + format, e);
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package voxspell.videoplayer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.Clip;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+/**
+ * The background music of the review video, for playing through javax.sound when the review is shown as a slide show.
+ * Java cannot decode MP3 itself, so the MP3 file is decoded to a WAV file by mpg123 the first time (and again only if the MP3 file changes).
+ * @author echa232
+ *
+ */
+class BackgroundMusic {
+
+	private static final Path MP3_FILE_PATH = Paths.get(VideoEncoder.BACKGROUND_MUSIC);
+	private static final Path WAVE_FILE_PATH = Paths.get("./.video/bgMusic.wav");
+
+	private BackgroundMusic() {
+	}
+
+	/**
+	 * Returns an open Clip of the background music, ready to be started, or null if the music could not be loaded.
+	 */
+	static Clip openClip() {
+		try {
+			if (Files.notExists(WAVE_FILE_PATH)
+					|| Files.getLastModifiedTime(WAVE_FILE_PATH).compareTo(Files.getLastModifiedTime(MP3_FILE_PATH)) < 0) {
+				decodeMP3File();
+			}
+
+			try (AudioInputStream audioStream = AudioSystem.getAudioInputStream(WAVE_FILE_PATH.toFile())) {
+				AudioFormat format = audioStream.getFormat();
+				ByteArrayOutputStream pcmData = new ByteArrayOutputStream();
+				byte[] buffer = new byte[4096];
+				int numOfBytesRead;
+				while ((numOfBytesRead = audioStream.read(buffer)) != -1) {
+					pcmData.write(buffer, 0, numOfBytesRead);
+				}
+
+				Clip clip = AudioSystem.getClip();
+				clip.open(format, pcmData.toByteArray(), 0, pcmData.size());
+				return clip;
+			}
+		} catch (IOException | UnsupportedAudioFileException | LineUnavailableException | IllegalArgumentException e) {
+			e.printStackTrace();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return null;
+	}
+
+	private static void decodeMP3File() throws IOException, InterruptedException {
+		ProcessBuilder pb = new ProcessBuilder("mpg123", "-q", "-w", WAVE_FILE_PATH.toString(), MP3_FILE_PATH.toString());
+		pb.redirectErrorStream(true);
+		pb.redirectOutput(new File("/dev/null"));
+		Process process = pb.start();
+		if (process.waitFor() != 0) {
+			Files.deleteIfExists(WAVE_FILE_PATH);
+			throw new IOException("mpg123 could not decode " + MP3_FILE_PATH);
+		}
+	}
+}
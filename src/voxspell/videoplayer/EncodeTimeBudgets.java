@@ -0,0 +1,141 @@
+package voxspell.videoplayer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+
+import voxspell.videoplayer.VideoPlayer.EncodingProfile;
+
+/**
+ * Chooses the encoding profile of each video, from the profile the user prefers and how long each profile takes to encode a slide on this computer.
+ * If the preferred profile has been measured to take longer than its budget, the next cheaper profile within its budget is used instead.
+ * The preferred profile and the last measurements are saved to ./.video/encodeTimes, so the right profile is chosen straight away next time.
+ * A profile that was too slow is given another try every few videos, so that one slow measurement (e.g. while the computer was busy) does not rule it out for good.
+ * @author echa232
+ *
+ */
+class EncodeTimeBudgets {
+
+	private static EncodeTimeBudgets _encodeTimeBudgets;
+
+	private Path _encodeTimesFilePath;
+
+	private EncodingProfile _preferredProfile;
+	//Number of videos a profile is passed over for being too slow before it is given another try
+	private static final int VIDEOS_BEFORE_RETRY = 5;
+
+	private EnumMap<EncodingProfile, Long> _measuredMillisPerSlide; //only has the profiles that have been measured
+	private EnumMap<EncodingProfile, Integer> _numOfVideosPassedOver; //only has the profiles that have been passed over since they were last measured
+
+	private EncodeTimeBudgets() {
+		_encodeTimesFilePath = Paths.get("./.video/encodeTimes");
+		_preferredProfile = EncodingProfile.STANDARD;
+		_measuredMillisPerSlide = new EnumMap<EncodingProfile, Long>(EncodingProfile.class);
+		_numOfVideosPassedOver = new EnumMap<EncodingProfile, Integer>(EncodingProfile.class);
+		load();
+	}
+
+	static synchronized EncodeTimeBudgets getInstance() {
+		if (_encodeTimeBudgets == null) {
+			_encodeTimeBudgets = new EncodeTimeBudgets();
+		}
+		return _encodeTimeBudgets;
+	}
+
+	/**
+	 * Returns the profile to encode the next video with: the preferred profile, or the most expensive cheaper one that is within its budget.
+	 * A profile that has been passed over for the last few videos has its measurement forgotten, so that it is chosen (and measured) again.
+	 */
+	synchronized EncodingProfile chooseProfile() {
+		for (int i = _preferredProfile.ordinal(); i > 0; i--) {
+			EncodingProfile profile = EncodingProfile.values()[i];
+			Long measuredMillis = _measuredMillisPerSlide.get(profile);
+			if (measuredMillis == null || measuredMillis <= profile._budgetMillisPerSlide) {
+				return profile;
+			}
+
+			Integer numOfVideosPassedOver = _numOfVideosPassedOver.get(profile);
+			numOfVideosPassedOver = (numOfVideosPassedOver == null) ? 1 : numOfVideosPassedOver + 1;
+			if (numOfVideosPassedOver >= VIDEOS_BEFORE_RETRY) {
+				_measuredMillisPerSlide.remove(profile);
+				_numOfVideosPassedOver.remove(profile);
+				save();
+				return profile;
+			}
+			_numOfVideosPassedOver.put(profile, numOfVideosPassedOver);
+		}
+		return EncodingProfile.values()[0];
+	}
+
+	synchronized EncodingProfile getPreferredProfile() {
+		return _preferredProfile;
+	}
+
+	/**
+	 * Changes the preferred profile. A profile chosen again by the user has its measurement forgotten,
+	 * so that it is given another try even if it was too slow before.
+	 */
+	synchronized void setPreferredProfile(EncodingProfile profile) {
+		if (profile == _preferredProfile) {
+			return;
+		}
+		_preferredProfile = profile;
+		_measuredMillisPerSlide.remove(profile);
+		save();
+	}
+
+	/**
+	 * Records how long encoding a slide took with the profile.
+	 * The measurement is averaged with the previous one, so that a single slow slide (e.g. while the computer was busy) does not decide the profile alone.
+	 */
+	synchronized void recordEncodeTime(EncodingProfile profile, long millis) {
+		Long previousMillis = _measuredMillisPerSlide.get(profile);
+		_measuredMillisPerSlide.put(profile, (previousMillis == null) ? millis : (previousMillis + millis) / 2);
+		_numOfVideosPassedOver.remove(profile);
+		save();
+	}
+
+	/**
+	 * Reads the preferred profile and the measurements. The first line is the preferred profile,
+	 * and every other line is a profile followed by its measured milliseconds per slide.
+	 */
+	private void load() {
+		if (Files.notExists(_encodeTimesFilePath)) {
+			return;
+		}
+		try {
+			List<String> lines = Files.readAllLines(_encodeTimesFilePath, StandardCharsets.ISO_8859_1);
+			if (!lines.isEmpty()) {
+				_preferredProfile = EncodingProfile.valueOf(lines.get(0).trim());
+			}
+			for (String line : lines.subList(Math.min(1, lines.size()), lines.size())) {
+				String[] profileAndMillis = line.trim().split(" ");
+				_measuredMillisPerSlide.put(EncodingProfile.valueOf(profileAndMillis[0]), Long.parseLong(profileAndMillis[1]));
+			}
+		} catch (IOException | IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+			//start again from the defaults, rather than use a file that does not make sense
+			e.printStackTrace();
+			_preferredProfile = EncodingProfile.STANDARD;
+			_measuredMillisPerSlide.clear();
+		}
+	}
+
+	private void save() {
+		List<String> lines = new ArrayList<String>();
+		lines.add(_preferredProfile.name());
+		for (EncodingProfile profile : _measuredMillisPerSlide.keySet()) {
+			lines.add(profile.name() + " " + _measuredMillisPerSlide.get(profile));
+		}
+		try {
+			Files.createDirectories(_encodeTimesFilePath.getParent());
+			Files.write(_encodeTimesFilePath, lines, StandardCharsets.ISO_8859_1);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+}
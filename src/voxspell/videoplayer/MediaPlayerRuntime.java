@@ -0,0 +1,141 @@
+package voxspell.videoplayer;
+
+import java.util.ArrayDeque;
+
+import javax.swing.SwingUtilities;
+
+import com.sun.jna.Native;
+import com.sun.jna.NativeLibrary;
+import uk.co.caprica.vlcj.binding.LibVlc;
+import uk.co.caprica.vlcj.component.EmbeddedMediaPlayerComponent;
+import uk.co.caprica.vlcj.player.MediaPlayerFactory;
+import uk.co.caprica.vlcj.runtime.RuntimeUtil;
+
+/**
+ * The libVLC runtime shared by every VideoPlayer in the application.
+ * Loading libVLC and creating a media player factory (which scans all of VLC's plugins) takes a few seconds,
+ * so it is done only once, on a background thread soon after the application starts (see warmUpInBackground()).
+ * The media player components are kept once a video has finished, and reused for the next video.
+ * If libVLC cannot be loaded, isAvailable() returns false and no video player components are made.
+ * The Event Dispatch Thread must not wait for libVLC to load, so it checks getAvailability() instead, which never blocks.
+ * @author echa232
+ *
+ */
+public class MediaPlayerRuntime {
+
+	/**
+	 * How far loading libVLC has got
+	 * @author echa232
+	 *
+	 */
+	enum Availability {
+		NOT_LOADED, LOADING, AVAILABLE, UNAVAILABLE;
+	}
+
+	private static MediaPlayerRuntime _mediaPlayerRuntime;
+
+	private volatile Availability _availability; //written while holding the lock, but read without it
+	private MediaPlayerFactory _mediaPlayerFactory; //null if libVLC is not available
+
+	private ArrayDeque<EmbeddedMediaPlayerComponent> _idleComponents; //only used on the Event Dispatch Thread
+
+	private MediaPlayerRuntime() {
+		_idleComponents = new ArrayDeque<EmbeddedMediaPlayerComponent>();
+		_availability = Availability.NOT_LOADED;
+	}
+
+	public static synchronized MediaPlayerRuntime getInstance() {
+		if (_mediaPlayerRuntime == null) {
+			_mediaPlayerRuntime = new MediaPlayerRuntime();
+		}
+		return _mediaPlayerRuntime;
+	}
+
+	/**
+	 * Loads libVLC and gets a media player component ready on a low priority background thread,
+	 * so that the first video does not have to wait for it.
+	 */
+	public void warmUpInBackground() {
+		Thread warmUpThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				if (isAvailable()) {
+					SwingUtilities.invokeLater(new Runnable() {
+						@Override
+						public void run() {
+							if (_idleComponents.isEmpty()) {
+								_idleComponents.push(createComponent());
+							}
+						}
+					});
+				}
+			}
+		}, "libVLC warm up");
+		warmUpThread.setDaemon(true);
+		warmUpThread.setPriority(Thread.MIN_PRIORITY);
+		warmUpThread.start();
+	}
+
+	/**
+	 * Returns true if libVLC could be loaded, loading it first if it has not been loaded yet.
+	 * Blocks while libVLC is being loaded, e.g. by the warm up thread, so it must not be called on the Event Dispatch Thread.
+	 */
+	synchronized boolean isAvailable() {
+		if (_availability == Availability.NOT_LOADED) {
+			_availability = Availability.LOADING;
+			try {
+				NativeLibrary.addSearchPath(
+						RuntimeUtil.getLibVlcLibraryName(), "/usr/lib/"
+						);
+				Native.loadLibrary(RuntimeUtil.getLibVlcLibraryName(), LibVlc.class);
+				_mediaPlayerFactory = new MediaPlayerFactory();
+			} catch (UnsatisfiedLinkError | RuntimeException e) {
+				//libVLC is not installed, or could not be started
+				e.printStackTrace();
+				_mediaPlayerFactory = null;
+			}
+			_availability = (_mediaPlayerFactory != null) ? Availability.AVAILABLE : Availability.UNAVAILABLE;
+		}
+		return _availability == Availability.AVAILABLE;
+	}
+
+	/**
+	 * Returns how far loading libVLC has got, without waiting for it to finish loading (e.g. on the Event Dispatch Thread)
+	 */
+	Availability getAvailability() {
+		return _availability;
+	}
+
+	/**
+	 * Returns a media player component that is not being used by any other video.
+	 * Must be called on the Event Dispatch Thread, and only once libVLC is AVAILABLE.
+	 */
+	EmbeddedMediaPlayerComponent acquireComponent() {
+		if (_idleComponents.isEmpty()) {
+			return createComponent();
+		}
+		return _idleComponents.pop();
+	}
+
+	/**
+	 * Takes back a media player component once its video has finished, so that it can be reused for the next video.
+	 * Must be called on the Event Dispatch Thread.
+	 */
+	void releaseComponent(EmbeddedMediaPlayerComponent component) {
+		component.getMediaPlayer().stop();
+		component.getMediaPlayer().mute(false);
+		_idleComponents.push(component);
+	}
+
+	@SuppressWarnings("serial")
+	private EmbeddedMediaPlayerComponent createComponent() {
+		final MediaPlayerFactory mediaPlayerFactory = _mediaPlayerFactory;
+		return new EmbeddedMediaPlayerComponent() {
+			@Override
+			protected MediaPlayerFactory onGetMediaPlayerFactory() {
+				//Share the factory, instead of each component making (and scanning the plugins for) its own
+				return mediaPlayerFactory;
+			}
+		};
+	}
+}
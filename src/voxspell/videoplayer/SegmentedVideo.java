@@ -0,0 +1,78 @@
+package voxspell.videoplayer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import voxspell.videoplayer.VideoPlayer.EncodingProfile;
+
+/**
+ * A review video that is encoded one slide at a time, into a segment per slide, while the quiz is played.
+ * Once every segment has been encoded, the segments are stitched together with the background music into the finished video,
+ * which only remuxes them, so it takes a fraction of the time that encoding the whole video would.
+ * The segments are kept in a temporary folder of their own, which is deleted once the video is finished or discarded.
+ * Every segment is encoded with the same profile, as segments can only be stitched together without encoding them again if they match.
+ * How long each segment takes to encode at normal priority is recorded, so that later videos can be given a cheaper profile if needed (see EncodeTimeBudgets).
+ * Segments encoded at low priority during the quiz are not timed, as they share the computer with the quiz and would seem slower than they are.
+ * Not thread safe: it is only ever used by the video rendering thread.
+ * @author echa232
+ *
+ */
+class SegmentedVideo {
+
+	private List<String> _words;
+	private Path _segmentFolderPath;
+	private Path[] _segmentFilePaths; //null for the slides that have not been encoded yet
+	private EncodingProfile _profile;
+
+	SegmentedVideo(List<String> words, Path segmentFolderPath, EncodingProfile profile) {
+		_words = new ArrayList<String>(words);
+		_profile = profile;
+		_segmentFolderPath = segmentFolderPath;
+		_segmentFilePaths = new Path[_words.size()];
+	}
+
+	/**
+	 * Encodes the segment of the slide, unless it has already been encoded
+	 * @param lowPriority whether ffmpeg should only use the CPU time that nothing else wants, i.e. when encoding ahead of time during the quiz
+	 */
+	void encodeSegment(int slideNumber, boolean lowPriority) throws IOException, InterruptedException {
+		if (_segmentFilePaths[slideNumber] != null) {
+			return;
+		}
+		Path segmentFilePath = _segmentFolderPath.resolve("segment" + slideNumber + ".mp4");
+		long startTime = System.nanoTime();
+		VideoEncoder.encodeSegment(slideNumber, _words.get(slideNumber), segmentFilePath, _profile, lowPriority);
+		if (!lowPriority) {
+			EncodeTimeBudgets.getInstance().recordEncodeTime(_profile, (System.nanoTime() - startTime) / 1000000);
+		}
+		_segmentFilePaths[slideNumber] = segmentFilePath;
+	}
+
+	/**
+	 * Encodes any segments that have not been encoded yet, then stitches all of them, with the background music, into the output video.
+	 * The user is waiting for the video by then, so the segments are encoded at normal priority.
+	 * The segments are deleted afterwards.
+	 */
+	void stitch(Path outputVideo) throws IOException, InterruptedException {
+		try {
+			for (int i = 0; i < _segmentFilePaths.length; i++) {
+				encodeSegment(i, false);
+			}
+			VideoEncoder.stitch(Arrays.asList(_segmentFilePaths), _segmentFolderPath.resolve("segments.txt"), outputVideo);
+		} finally {
+			discard();
+		}
+	}
+
+	/**
+	 * Deletes the segments, and the folder they are kept in
+	 */
+	void discard() {
+		VideoCache.deleteFolder(_segmentFolderPath);
+		Arrays.fill(_segmentFilePaths, null);
+	}
+}
@@ -0,0 +1,100 @@
+package voxspell.videoplayer;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Draws the slides of the end of quiz video in-process with Java2D, instead of running ImageMagick once per slide.
+ * The layout is the same as the slides ImageMagick used to make: a white 600x460 slide with a single word in black 36pt FreeMono,
+ * where each slide's word is drawn one line (36pt) below the previous slide's word, starting at (50, 50).
+ * The slides are independent of each other, so they are drawn in parallel.
+ * @author echa232
+ *
+ */
+class SlideRenderer {
+
+	static final int SLIDE_WIDTH = 600;
+	static final int SLIDE_HEIGHT = 460;
+
+	private static final Font SLIDE_FONT = new Font("FreeMono", Font.PLAIN, 36);
+	private static final int TEXT_X_POSITION = 50;
+	private static final int FIRST_TEXT_Y_POSITION = 50; //y position of the baseline of the first slide's text
+	private static final int LINE_HEIGHT = 36;
+
+	private SlideRenderer() {
+	}
+
+	/**
+	 * Returns a description of the layout of the slides, which changes whenever the slides would be drawn differently
+	 */
+	static String getLayout() {
+		return SLIDE_WIDTH + "x" + SLIDE_HEIGHT + " " + SLIDE_FONT.getName() + " " + SLIDE_FONT.getStyle() + " " + SLIDE_FONT.getSize()
+				+ " at " + TEXT_X_POSITION + "," + FIRST_TEXT_Y_POSITION + " +" + LINE_HEIGHT;
+	}
+
+	/**
+	 * Draws one slide per word, in the order of the words, using all available cores.
+	 */
+	static List<BufferedImage> renderSlides(List<String> words) {
+		int numOfThreads = Math.max(1, Math.min(words.size(), Runtime.getRuntime().availableProcessors()));
+		ExecutorService executor = Executors.newFixedThreadPool(numOfThreads);
+		try {
+			List<Future<BufferedImage>> futureSlides = new ArrayList<Future<BufferedImage>>();
+			for (int i = 0; i < words.size(); i++) {
+				final int slideNumber = i;
+				final String word = words.get(i);
+				futureSlides.add(executor.submit(new Callable<BufferedImage>() {
+					@Override
+					public BufferedImage call() {
+						return renderSlide(slideNumber, word);
+					}
+				}));
+			}
+
+			List<BufferedImage> slides = new ArrayList<BufferedImage>();
+			for (Future<BufferedImage> futureSlide : futureSlides) {
+				slides.add(futureSlide.get());
+			}
+			return slides;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while drawing the slides", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Could not draw the slides", e.getCause());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Draws a single slide
+	 * @param slideNumber the position of the slide in the video, starting from 0, which decides how far down the word is drawn
+	 */
+	static BufferedImage renderSlide(int slideNumber, String word) {
+		//3 bytes per pixel in BGR order, so that the pixels can be given to ffmpeg as raw bgr24 frames without converting them
+		BufferedImage slide = new BufferedImage(SLIDE_WIDTH, SLIDE_HEIGHT, BufferedImage.TYPE_3BYTE_BGR);
+		Graphics2D g = slide.createGraphics();
+		try {
+			g.setColor(Color.WHITE);
+			g.fillRect(0, 0, SLIDE_WIDTH, SLIDE_HEIGHT);
+
+			g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+			g.setFont(SLIDE_FONT);
+			g.setColor(Color.BLACK);
+			g.drawString(word, TEXT_X_POSITION, FIRST_TEXT_Y_POSITION + slideNumber * LINE_HEIGHT);
+		} finally {
+			g.dispose();
+		}
+		return slide;
+	}
+}
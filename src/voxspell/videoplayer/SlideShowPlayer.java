@@ -0,0 +1,299 @@
+package voxspell.videoplayer;
+
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.ComponentOrientation;
+import java.awt.FlowLayout;
+import java.awt.Font;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import javax.sound.sampled.BooleanControl;
+import javax.sound.sampled.Clip;
+import javax.swing.JButton;
+import javax.swing.JFrame;
+import javax.swing.JPanel;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
+import javax.swing.border.MatteBorder;
+
+/**
+ * Shows the review video as a slide show drawn straight into a Swing component, instead of encoding and playing an MP4 video.
+ * It looks and behaves like the video: the same slides (see SlideRenderer), 3 seconds each, with the background music
+ * played through javax.sound, and the same pause, mute and skip controls. No ffmpeg or libVLC is needed.
+ * A Swing Timer keeps track of the position in the slide show, so pausing and skipping work on the Event Dispatch Thread
+ * just like they do for the video.
+ * @author echa232
+ *
+ */
+class SlideShowPlayer {
+
+	private static final int MILLIS_PER_SLIDE = 3000;
+	private static final int SKIP_MILLIS = 5000;
+	private static final int TIMER_DELAY_MILLIS = 100;
+
+	private List<String> _words;
+
+	private List<BufferedImage> _slides;
+	private Clip _music; //null if the background music could not be loaded
+
+	private Timer _timer;
+	private long _positionMillis;
+	private long _lastTickNanos;
+	private int _currentSlideNumber;
+	private boolean _paused;
+	private boolean _muted;
+
+	private JFrame _slideShowFrame;
+	private SlidePanel _slidePanel;
+
+	private JPanel _slideShowButtons;
+	private JButton _pauseBtn;
+	private JButton _btnMute;
+	private JButton _btnSkip;
+	private JButton _btnSkipBack;
+
+	SlideShowPlayer(List<String> words) {
+		_words = new ArrayList<String>(words);
+	}
+
+	/**
+	 * Draws the slides and loads the music in the background, then shows the slide show.
+	 */
+	void play() {
+		new SwingWorker<Void, Void>() {
+			@Override
+			protected Void doInBackground() {
+				_slides = SlideRenderer.renderSlides(_words);
+				_music = BackgroundMusic.openClip();
+				return null;
+			}
+
+			@Override
+			protected void done() {
+				try {
+					get();
+				} catch (InterruptedException | ExecutionException e) {
+					e.printStackTrace();
+					return;
+				}
+				setupSlideShowGUI();
+				start();
+			}
+		}.execute();
+	}
+
+	private void setupSlideShowGUI() {
+		_slideShowFrame = new JFrame("End of Quiz Video");
+
+		_slideShowFrame.addWindowListener(new java.awt.event.WindowAdapter() {
+			@Override
+			public void windowClosing(java.awt.event.WindowEvent windowEvent) {
+				close();
+			}
+		});
+
+		_slideShowFrame.setLayout(new BorderLayout());
+
+		_slidePanel = new SlidePanel();
+		_slideShowFrame.add(_slidePanel, BorderLayout.CENTER);
+
+		FlowLayout flowLayout = new FlowLayout();
+		flowLayout.setAlignment(FlowLayout.CENTER);
+
+		_slideShowButtons = new JPanel();
+		_slideShowButtons.setLayout(flowLayout);
+		_slideShowButtons.setComponentOrientation(ComponentOrientation.LEFT_TO_RIGHT);
+
+		setupBtnsGUIAndFunctions();
+
+		_slideShowFrame.add(_slideShowButtons, BorderLayout.NORTH);
+		_slideShowFrame.setSize(560,469);
+		_slideShowFrame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+		_slideShowFrame.setLocationRelativeTo(null);
+		_slideShowFrame.setVisible(true);
+	}
+
+	private void setupBtnsGUIAndFunctions() {
+		// add pause button
+		_pauseBtn = new JButton("Pause");
+		_pauseBtn.setForeground(Color.BLACK);
+		_pauseBtn.setFont(new Font("Garuda", Font.BOLD | Font.ITALIC, 14));
+		_pauseBtn.setBorder(new MatteBorder(1, 5, 1, 1, new Color(0, 102, 0)));
+		_pauseBtn.setBackground(Color.WHITE);
+		_pauseBtn.addActionListener(new ActionListener(){
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				togglePause();
+				if (_pauseBtn.getText().equals("Pause")) {
+					_pauseBtn.setText("Play");
+				} else {
+					_pauseBtn.setText("Pause");
+				}
+			}
+		});
+		_slideShowButtons.add(_pauseBtn);
+
+		//add mute button
+		_btnMute = new JButton("Mute");
+		_btnMute.setForeground(Color.BLACK);
+		_btnMute.setFont(new Font("Garuda", Font.BOLD | Font.ITALIC, 14));
+		_btnMute.setBorder(new MatteBorder(1, 5, 1, 1, new Color(0, 102, 0)));
+		_btnMute.setBackground(Color.WHITE);
+		_btnMute.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				toggleMute();
+			}
+		});
+		_slideShowButtons.add(_btnMute);
+
+		// add skip forward button
+		_btnSkip = new JButton("Skip Forward");
+		_btnSkip.setForeground(Color.BLACK);
+		_btnSkip.setFont(new Font("Garuda", Font.BOLD | Font.ITALIC, 14));
+		_btnSkip.setBorder(new MatteBorder(1, 5, 1, 1, new Color(0, 102, 0)));
+		_btnSkip.setBackground(Color.WHITE);
+		_btnSkip.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				skip(SKIP_MILLIS);
+			}
+		});
+		_slideShowButtons.add(_btnSkip);
+
+		//add skip backward button
+		_btnSkipBack = new JButton("Skip Backward");
+		_btnSkipBack.setForeground(Color.BLACK);
+		_btnSkipBack.setFont(new Font("Garuda", Font.BOLD | Font.ITALIC, 14));
+		_btnSkipBack.setBorder(new MatteBorder(1, 5, 1, 1, new Color(0, 102, 0)));
+		_btnSkipBack.setBackground(Color.WHITE);
+		_btnSkipBack.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				skip(-SKIP_MILLIS);
+			}
+		});
+		_slideShowButtons.add(_btnSkipBack);
+	}
+
+	private void start() {
+		_positionMillis = 0;
+		_currentSlideNumber = 0;
+		_lastTickNanos = System.nanoTime();
+		_timer = new Timer(TIMER_DELAY_MILLIS, new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				tick();
+			}
+		});
+		_timer.start();
+		if (_music != null) {
+			_music.start();
+		}
+	}
+
+	/**
+	 * Moves the slide show along by the time since the last tick, and closes it once the last slide has been shown for its 3 seconds
+	 */
+	private void tick() {
+		//whole milliseconds only, carrying the rest over to the next tick so that the slide show does not fall behind the music
+		long elapsedMillis = (System.nanoTime() - _lastTickNanos) / 1000000;
+		_lastTickNanos += elapsedMillis * 1000000;
+		if (!_paused) {
+			_positionMillis += elapsedMillis;
+		}
+
+		if (_positionMillis >= getLengthMillis()) {
+			close();
+			return;
+		}
+		int slideNumber = (int) (_positionMillis / MILLIS_PER_SLIDE);
+		if (slideNumber != _currentSlideNumber) {
+			_currentSlideNumber = slideNumber;
+			_slidePanel.repaint();
+		}
+	}
+
+	private void togglePause() {
+		_paused = !_paused;
+		if (_music != null) {
+			if (_paused) {
+				_music.stop();
+			} else if (_music.getMicrosecondPosition() < _music.getMicrosecondLength()) {
+				_music.start();
+			}
+		}
+	}
+
+	private void toggleMute() {
+		_muted = !_muted;
+		if (_music != null && _music.isControlSupported(BooleanControl.Type.MUTE)) {
+			((BooleanControl) _music.getControl(BooleanControl.Type.MUTE)).setValue(_muted);
+		}
+	}
+
+	/**
+	 * Moves the slide show, and the music with it, forwards or backwards. Skipping past the end finishes the slide show.
+	 */
+	private void skip(long millis) {
+		_positionMillis = Math.max(0, _positionMillis + millis);
+		if (_music != null) {
+			long musicPositionMicros = Math.min(_positionMillis * 1000, _music.getMicrosecondLength());
+			_music.setMicrosecondPosition(musicPositionMicros);
+			if (!_paused && musicPositionMicros < _music.getMicrosecondLength()) {
+				_music.start();
+			}
+		}
+		tick();
+	}
+
+	private long getLengthMillis() {
+		return (long) _slides.size() * MILLIS_PER_SLIDE;
+	}
+
+	private void close() {
+		if (_timer == null) { //already closed
+			return;
+		}
+		_timer.stop();
+		_timer = null;
+		if (_music != null) {
+			_music.close();
+		}
+		_slideShowFrame.dispose();
+	}
+
+	/**
+	 * Draws the current slide, scaled to fit the panel
+	 */
+	@SuppressWarnings("serial")
+	private class SlidePanel extends JPanel {
+
+		SlidePanel() {
+			setBackground(Color.BLACK);
+		}
+
+		@Override
+		protected void paintComponent(Graphics g) {
+			super.paintComponent(g);
+			if (_slides.isEmpty()) {
+				return;
+			}
+			double scale = Math.min(getWidth() * 1.0 / SlideRenderer.SLIDE_WIDTH, getHeight() * 1.0 / SlideRenderer.SLIDE_HEIGHT);
+			int width = (int) (SlideRenderer.SLIDE_WIDTH * scale);
+			int height = (int) (SlideRenderer.SLIDE_HEIGHT * scale);
+
+			Graphics2D g2 = (Graphics2D) g;
+			g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			g2.drawImage(_slides.get(_currentSlideNumber), (getWidth() - width) / 2, (getHeight() - height) / 2, width, height, null);
+		}
+	}
+}
@@ -0,0 +1,228 @@
+package voxspell.videoplayer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import voxspell.videoplayer.VideoPlayer.EncodingProfile;
+
+/**
+ * An on-disk cache of rendered review videos, stored as MP4 files in ./.video/cache.
+ * A video only depends on its words (in order), the render settings (including its encoding profile) and the background music, so each MP4 file is named after
+ * a hash of those and can be played again without rendering it.
+ * The cache is bounded in size: when it grows past the limit, the least recently played videos are deleted first.
+ * The last modified time of each file is used as its last played time, so the LRU order survives restarts of the application.
+ * @author echa232
+ *
+ */
+class VideoCache {
+
+	private static VideoCache _videoCache;
+
+	private static final long MAX_CACHE_SIZE_BYTES = 64L * 1024 * 1024; //enough for a few dozen videos
+	private static final String VIDEO_FILE_EXTENSION = ".mp4";
+
+	private Path _cacheFolderPath;
+
+	//Key -> file size in bytes. Access ordered, so iteration starts at the least recently played video.
+	private LinkedHashMap<String, Long> _cachedVideos;
+	private long _cacheSizeBytes;
+
+	private long _numOfHits;
+	private long _numOfMisses;
+
+	private VideoCache() {
+		_cacheFolderPath = Paths.get("./.video/cache");
+		_cachedVideos = new LinkedHashMap<String, Long>(16, 0.75f, true);
+		load();
+	}
+
+	static synchronized VideoCache getInstance() {
+		if (_videoCache == null) {
+			_videoCache = new VideoCache();
+		}
+		return _videoCache;
+	}
+
+	/**
+	 * Finds the videos that are already in the cache folder, oldest played first.
+	 * Temporary files and folders left behind by a render that did not finish are deleted.
+	 */
+	private void load() {
+		try {
+			Files.createDirectories(_cacheFolderPath);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return;
+		}
+
+		File[] files = _cacheFolderPath.toFile().listFiles();
+		if (files == null) {
+			return;
+		}
+		Arrays.sort(files, new Comparator<File>() {
+			@Override
+			public int compare(File f1, File f2) {
+				return Long.compare(f1.lastModified(), f2.lastModified());
+			}
+		});
+		for (File file : files) {
+			String fileName = file.getName();
+			if (fileName.endsWith(VIDEO_FILE_EXTENSION)) {
+				String key = fileName.substring(0, fileName.length() - VIDEO_FILE_EXTENSION.length());
+				_cachedVideos.put(key, file.length());
+				_cacheSizeBytes += file.length();
+			} else if (file.isDirectory()) {
+				deleteFolder(file.toPath());
+			} else {
+				file.delete();
+			}
+		}
+		evictIfNeeded();
+	}
+
+	/**
+	 * Returns the key that the video of the words is cached under.
+	 * The background music is identified by its size and last modified time, so that replacing it is noticed without reading it.
+	 */
+	static String getKey(List<String> words, EncodingProfile profile) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			StringBuilder keyText = new StringBuilder();
+			keyText.append(VideoEncoder.getRenderSettings(profile)).append("\n");
+
+			File backgroundMusic = new File(VideoEncoder.BACKGROUND_MUSIC);
+			keyText.append(backgroundMusic.length()).append(" ").append(backgroundMusic.lastModified()).append("\n");
+
+			for (String word : words) {
+				keyText.append(word).append("\n");
+			}
+			byte[] hash = digest.digest(keyText.toString().getBytes(StandardCharsets.UTF_8));
+
+			StringBuilder key = new StringBuilder();
+			for (byte b : hash) {
+				key.append(String.format("%02x", b));
+			}
+			return key.toString();
+		} catch (NoSuchAlgorithmException e) {
+			//Every Java platform is required to support SHA-1
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Returns the MP4 file of the video, or null if the video is not cached (yet).
+	 * Counts towards the hit/miss counters, and marks the video as the most recently played one.
+	 */
+	synchronized Path getVideoFile(String key) {
+		if (_cachedVideos.get(key) == null) {
+			_numOfMisses++;
+			return null;
+		}
+		Path videoFilePath = getVideoFilePath(key);
+		if (Files.notExists(videoFilePath)) {
+			//deleted from outside of the application
+			_cacheSizeBytes -= _cachedVideos.remove(key);
+			_numOfMisses++;
+			return null;
+		}
+		_numOfHits++;
+		try {
+			Files.setLastModifiedTime(videoFilePath, FileTime.fromMillis(System.currentTimeMillis()));
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return videoFilePath;
+	}
+
+	/**
+	 * Returns a new, empty file in the cache folder that a video can be rendered to before it is added with addVideoFile().
+	 */
+	Path createTempVideoFile() throws IOException {
+		Files.createDirectories(_cacheFolderPath);
+		return Files.createTempFile(_cacheFolderPath, "render", ".tmp");
+	}
+
+	/**
+	 * Returns a new, empty folder in the cache folder that the parts of a video can be rendered to, e.g. the segments of a SegmentedVideo.
+	 */
+	Path createTempFolder() throws IOException {
+		Files.createDirectories(_cacheFolderPath);
+		return Files.createTempDirectory(_cacheFolderPath, "render");
+	}
+
+	/**
+	 * Deletes a (temporary) folder, along with the files inside it
+	 */
+	static void deleteFolder(Path folderPath) {
+		File[] files = folderPath.toFile().listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		try {
+			Files.deleteIfExists(folderPath);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Moves the rendered MP4 file into the cache under the given key, evicting the least recently played videos if the cache is too big.
+	 * @return the MP4 file in the cache
+	 */
+	synchronized Path addVideoFile(String key, Path renderedVideoFilePath) throws IOException {
+		Path videoFilePath = getVideoFilePath(key);
+		Files.move(renderedVideoFilePath, videoFilePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		Long oldSize = _cachedVideos.put(key, Files.size(videoFilePath));
+		if (oldSize != null) {
+			_cacheSizeBytes -= oldSize;
+		}
+		_cacheSizeBytes += _cachedVideos.get(key);
+
+		evictIfNeeded();
+		return videoFilePath;
+	}
+
+	synchronized long getNumOfHits() {
+		return _numOfHits;
+	}
+
+	synchronized long getNumOfMisses() {
+		return _numOfMisses;
+	}
+
+	private void evictIfNeeded() {
+		Iterator<Map.Entry<String, Long>> iterator = _cachedVideos.entrySet().iterator();
+		//Always keep the most recently played video, even if it alone is bigger than the limit
+		while (_cacheSizeBytes > MAX_CACHE_SIZE_BYTES && _cachedVideos.size() > 1) {
+			Map.Entry<String, Long> leastRecentlyPlayed = iterator.next();
+			try {
+				Files.deleteIfExists(getVideoFilePath(leastRecentlyPlayed.getKey()));
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			_cacheSizeBytes -= leastRecentlyPlayed.getValue();
+			iterator.remove();
+		}
+	}
+
+	private Path getVideoFilePath(String key) {
+		return _cacheFolderPath.resolve(key + VIDEO_FILE_EXTENSION);
+	}
+}
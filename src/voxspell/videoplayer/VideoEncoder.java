@@ -0,0 +1,172 @@
+package voxspell.videoplayer;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.ProcessBuilder.Redirect;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import voxspell.videoplayer.VideoPlayer.EncodingProfile;
+
+/**
+ * Encodes the slide show video with ffmpeg.
+ * Each slide is encoded on its own, into a short segment of video (see encodeSegment()), as soon as its word is known,
+ * so that all that is left to do at the end of the quiz is to join the segments together with the background music (see stitch()).
+ * The slides drawn by the SlideRenderer are written to ffmpeg's standard input as raw BGR frames,
+ * so no image files are encoded, written, read back and cleaned up along the way.
+ * The x264 preset, size and frame rate of the video depend on its EncodingProfile.
+ * @author echa232
+ *
+ */
+class VideoEncoder {
+
+	static final String BACKGROUND_MUSIC = "./.video/bgMusic.mp3";
+
+	private static final int SECONDS_PER_SLIDE = 3;
+
+	private VideoEncoder() {
+	}
+
+	/**
+	 * Returns a description of everything, other than the words and the background music, that decides what the video looks like,
+	 * so that videos rendered with different settings are never mistaken for each other (see VideoCache).
+	 */
+	static String getRenderSettings(EncodingProfile profile) {
+		return SlideRenderer.getLayout() + "\n" + SECONDS_PER_SLIDE + "s per slide at " + profile._frameRate + "fps\n"
+				+ String.join(" ", getSegmentArguments(profile));
+	}
+
+	/**
+	 * Returns the ffmpeg arguments for the format of the segments, which the stitched video keeps as it is
+	 */
+	private static List<String> getSegmentArguments(EncodingProfile profile) {
+		List<String> arguments = new ArrayList<String>();
+		arguments.add("-c:v");
+		arguments.add("libx264");
+		arguments.add("-preset");
+		arguments.add(profile._preset);
+		arguments.add("-vf");
+		arguments.add("scale=" + profile._width + ":" + profile._height);
+		arguments.add("-pix_fmt");
+		arguments.add("yuv420p");
+		arguments.add("-f"); //the video may be rendered to a temporary file, whose name does not tell ffmpeg the format
+		arguments.add("mp4");
+		return arguments;
+	}
+
+	/**
+	 * Draws the slide of a word and encodes it, with the given profile, into a segment of video that shows the slide for 3 seconds.
+	 * Blocks until ffmpeg has finished. If the thread is interrupted, ffmpeg is stopped and the unfinished segment is deleted.
+	 * @param slideNumber the position of the slide in the video, starting from 0
+	 * @param lowPriority whether ffmpeg should only use the CPU time that nothing else wants, e.g. when rendering ahead of time
+	 * @throws IOException if ffmpeg could not be started, or did not make the segment
+	 */
+	static void encodeSegment(int slideNumber, String word, Path outputSegment, EncodingProfile profile, boolean lowPriority)
+			throws IOException, InterruptedException {
+		BufferedImage slide = SlideRenderer.renderSlide(slideNumber, word);
+
+		List<String> arguments = new ArrayList<String>();
+		//the slide, as raw frames on standard input
+		arguments.add("-f");
+		arguments.add("rawvideo");
+		arguments.add("-pixel_format");
+		arguments.add("bgr24");
+		arguments.add("-video_size");
+		arguments.add(SlideRenderer.SLIDE_WIDTH + "x" + SlideRenderer.SLIDE_HEIGHT);
+		arguments.add("-framerate");
+		arguments.add(String.valueOf(profile._frameRate));
+		arguments.add("-i");
+		arguments.add("-");
+		arguments.addAll(getSegmentArguments(profile));
+
+		//The same frame, repeated for the length of the slide. x264 turns the repeats into next to nothing.
+		runFFmpeg(arguments, outputSegment, slide, SECONDS_PER_SLIDE * profile._frameRate, lowPriority);
+	}
+
+	/**
+	 * Joins the segments together, in order, and adds the background music, without encoding any of them again.
+	 * Blocks until ffmpeg has finished. If the thread is interrupted, ffmpeg is stopped and the unfinished video is deleted.
+	 * @param concatListFile a file to list the segments in, for ffmpeg's concat demuxer
+	 * @throws IOException if ffmpeg could not be started, or did not make the video
+	 */
+	static void stitch(List<Path> segments, Path concatListFile, Path outputVideo) throws IOException, InterruptedException {
+		List<String> concatList = new ArrayList<String>();
+		for (Path segment : segments) {
+			concatList.add("file '" + segment.toAbsolutePath().toString().replace("'", "'\\''") + "'");
+		}
+		Files.write(concatListFile, concatList, StandardCharsets.UTF_8);
+
+		List<String> arguments = new ArrayList<String>();
+		//the segments, one after another
+		arguments.add("-f");
+		arguments.add("concat");
+		arguments.add("-safe"); //the segments are listed by their absolute paths
+		arguments.add("0");
+		arguments.add("-i");
+		arguments.add(concatListFile.toString());
+		//the background music
+		arguments.add("-i");
+		arguments.add(BACKGROUND_MUSIC);
+		arguments.add("-c");
+		arguments.add("copy");
+		arguments.add("-f");
+		arguments.add("mp4");
+
+		runFFmpeg(arguments, outputVideo, null, 0, false);
+	}
+
+	/**
+	 * Runs ffmpeg to make the output file, giving it the frame the given number of times on its standard input.
+	 * If ffmpeg fails, or the thread is interrupted, ffmpeg is stopped and the unfinished output file is deleted.
+	 * @param frame the frame to give ffmpeg, or null if ffmpeg does not read its standard input
+	 */
+	private static void runFFmpeg(List<String> arguments, Path outputFile, BufferedImage frame, int numOfFrames, boolean lowPriority)
+			throws IOException, InterruptedException {
+		List<String> command = new ArrayList<String>();
+		if (lowPriority) {
+			command.add("nice");
+			command.add("-n");
+			command.add("19");
+		}
+		command.add("ffmpeg");
+		command.add("-y"); //standard input may carry frames, so ffmpeg must never stop to ask about overwriting
+		command.add("-loglevel");
+		command.add("error");
+		command.addAll(arguments);
+		command.add(outputFile.toString());
+
+		ProcessBuilder pb = new ProcessBuilder(command);
+		pb.redirectOutput(Redirect.INHERIT);
+		pb.redirectError(Redirect.INHERIT);
+		Process process = pb.start();
+		boolean finished = false;
+		try {
+			try (OutputStream frames = new BufferedOutputStream(process.getOutputStream())) {
+				if (frame != null) {
+					byte[] pixels = ((DataBufferByte) frame.getRaster().getDataBuffer()).getData();
+					for (int i = 0; i < numOfFrames; i++) {
+						if (Thread.interrupted()) {
+							throw new InterruptedException();
+						}
+						frames.write(pixels);
+					}
+				}
+			}
+			if (process.waitFor() != 0) {
+				throw new IOException("ffmpeg could not make " + outputFile);
+			}
+			finished = true;
+		} finally {
+			process.destroy();
+			if (!finished) {
+				Files.deleteIfExists(outputFile);
+			}
+		}
+	}
+}
@@ -10,9 +10,14 @@ import java.awt.event.ActionListener;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import javax.swing.JButton;
 import javax.swing.JDialog;
@@ -20,17 +25,14 @@ import javax.swing.JFrame;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JProgressBar;
+import javax.swing.SwingUtilities;
 import javax.swing.SwingWorker;
 import javax.swing.border.MatteBorder;
 
-import com.sun.jna.Native;
-import com.sun.jna.NativeLibrary;
-import uk.co.caprica.vlcj.binding.LibVlc;
 import uk.co.caprica.vlcj.component.EmbeddedMediaPlayerComponent;
 import uk.co.caprica.vlcj.player.MediaPlayer;
 import uk.co.caprica.vlcj.player.MediaPlayerEventAdapter;
 import uk.co.caprica.vlcj.player.embedded.EmbeddedMediaPlayer;
-import uk.co.caprica.vlcj.runtime.RuntimeUtil;
 
 /**
  * A video player that has an embedded media player using the vlcj external library
@@ -38,14 +40,68 @@ import uk.co.caprica.vlcj.runtime.RuntimeUtil;
  * The custom made video is a slide show with a song playing in the background.
  * Each slide in the slide show is a single word that appears to be as though it's 'one line below the previous' word.
  * 
+ * As the words of the video are known as soon as a quiz starts, the video can be rendered in the background
+ * while the quiz is played (see prerenderVideo()), one slide at a time as each word comes up (see prerenderSlide()),
+ * so that at the end of the quiz the slides only need to be stitched together before the video is played.
+ * Rendered videos are kept in a VideoCache, so a quiz with the same words as an earlier one does not render its video again.
+ * 
+ * The review can instead be shown as a slide show that needs no encoding or native libraries (see PlaybackMode).
+ * The slide show is also used whenever libVLC is not available or the video could not be made.
+ * 
  * Code adapted from assignment 3 and Nasser Giacaman's ACP exercise
  * @author echa232
  *
  */
 public class VideoPlayer {
 
+	/**
+	 * The ways the review video can be shown:
+	 * as an MP4 video encoded by ffmpeg and played by libVLC, or as a slide show drawn straight into the window (see SlideShowPlayer).
+	 * @author echa232
+	 *
+	 */
+	public enum PlaybackMode {
+		VIDEO, SLIDESHOW;
+	}
+
+	/**
+	 * The quality tiers the video can be encoded at, from the cheapest to the most expensive to encode.
+	 * Each has a budget for how long encoding a slide may take on this computer: when a tier takes longer than its budget,
+	 * the next cheaper tier is used instead (see EncodeTimeBudgets).
+	 * @author echa232
+	 *
+	 */
+	public enum EncodingProfile {
+		DRAFT("Draft", "ultrafast", 300, 230, 10, Long.MAX_VALUE),
+		STANDARD("Standard", "medium", 600, 460, 25, 1000),
+		HIGH("High", "slow", 600, 460, 30, 2000);
+
+		String _profileName;
+		String _preset; //the x264 preset
+		int _width;
+		int _height;
+		int _frameRate;
+		long _budgetMillisPerSlide;
+
+		private EncodingProfile(String profileName, String preset, int width, int height, int frameRate, long budgetMillisPerSlide) {
+			_profileName = profileName;
+			_preset = preset;
+			_width = width;
+			_height = height;
+			_frameRate = frameRate;
+			_budgetMillisPerSlide = budgetMillisPerSlide;
+		}
+
+		public String toString() {
+			return _profileName;
+		}
+	}
+
+	private static PlaybackMode _playbackMode = PlaybackMode.VIDEO;
+
 	private EmbeddedMediaPlayerComponent _mediaPlayerComponent;
 	private EmbeddedMediaPlayer _video;
+	private MediaPlayerEventAdapter _videoEventListener;
 
 	private JFrame _videoFrame;
 	
@@ -57,38 +113,57 @@ public class VideoPlayer {
 	private JButton _btnSkip;
 	private JButton _btnSkipBack;
 
-	private VideoWorker _worker; //A background thread for creating the video without freezing the GUI
+	/*
+	 * Videos are rendered one at a time, on a low priority thread, so that rendering never competes with the quiz.
+	 * A cancelled render is always cleaned up before the next one starts.
+	 */
+	private static final ExecutorService VIDEO_RENDERING_EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "Video renderer");
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			return thread;
+		}
+	});
+
+	private VideoWorker _worker; //A background thread for waiting for the video without freezing the GUI
 	private ArrayList<String> _videoContent; //A list of words that will appear as the content of the video
 
-	String outputVideo = "./.video/outputVideo.mp4"; //The path where the custom video will be at
-	ArrayList<Path> slideFilePaths; //A list of paths. Each path leads to a single slide to be put into the slide show video
+	/*
+	 * The state of the video being rendered. Only used on the video rendering thread, other than the fields for the render tasks.
+	 */
+	private boolean _renderStarted; //whether prerenderVideo() has been called
+	private List<Future<Path>> _renderTasks; //every render task submitted, so that they can be cancelled
+	private EncodingProfile _preferredProfile; //the profile the user preferred when the video was started
+	private String _cacheKey;
+	private Path _cachedVideoFilePath; //the video, if it was found in the video cache
+	private SegmentedVideo _segmentedVideo; //the video, if it is being encoded one slide at a time
+	private Future<Path> _renderedVideo; //The video being stitched together (or taken from the video cache) in the background, once it is to be played
 
 	public VideoPlayer(ArrayList<String> contentForVideo) {
-		_videoContent = contentForVideo;
-		setupMediaPlayer();
-		setupVideoGUI();	
+		_videoContent = new ArrayList<String>(contentForVideo);
+		_renderTasks = new ArrayList<Future<Path>>();
 	}
 
 	private void setupMediaPlayer() {
-		NativeLibrary.addSearchPath(
-				RuntimeUtil.getLibVlcLibraryName(), "/usr/lib/" 
-				);
-		Native.loadLibrary(RuntimeUtil.getLibVlcLibraryName(), LibVlc.class);
-
-
-		_mediaPlayerComponent = new EmbeddedMediaPlayerComponent();
+		_mediaPlayerComponent = MediaPlayerRuntime.getInstance().acquireComponent();
 
 		_video = _mediaPlayerComponent.getMediaPlayer();
 
-		_video.addMediaPlayerEventListener(
-
-				new MediaPlayerEventAdapter() {
+		_videoEventListener = new MediaPlayerEventAdapter() {
+			@Override
+			public void finished (MediaPlayer mediaPlayer) {
+				//libVLC must not be called back from its own event thread, so close the video on the Event Dispatch Thread
+				SwingUtilities.invokeLater(new Runnable() {
 					@Override
-					public void finished (MediaPlayer mediaPlayer) {
-						deleteVideoFiles();
-						_videoFrame.dispose();
+					public void run() {
+						closeVideo();
 					}
 				});
+			}
+		};
+		_video.addMediaPlayerEventListener(_videoEventListener);
 	}
 
 	private void setupVideoGUI() {
@@ -97,9 +172,7 @@ public class VideoPlayer {
 		_videoFrame.addWindowListener(new java.awt.event.WindowAdapter() {
 			@Override
 			public void windowClosing(java.awt.event.WindowEvent windowEvent) {
-				_video.stop();
-				deleteVideoFiles();
-				_videoFrame.dispose();
+				closeVideo();
 			}
 		});
 
@@ -189,37 +262,236 @@ public class VideoPlayer {
 	}
 
 	/**
-	 * Plays the video with a given file name
-	 * @param filename
+	 * Starts rendering the video in the background, at a low priority, so that it is ready to be played later.
+	 * If the same video has been rendered before, it is taken from the video cache instead.
+	 * Otherwise, the slides are encoded one by one with prerenderSlide(), and stitched together when the video is played.
+	 * Does nothing if the video has already been started, or if the review is to be shown as a slide show.
 	 */
-	public void playVideo(){
-		_worker = new VideoWorker();
-		_worker.execute();
+	public void prerenderVideo() {
+		if (_renderStarted || getPlaybackMode() == PlaybackMode.SLIDESHOW) {
+			return;
+		}
+		_renderStarted = true;
+		submitRenderTask(new Callable<Path>() {
+			@Override
+			public Path call() throws IOException {
+				if (!MediaPlayerRuntime.getInstance().isAvailable()) {
+					//the slide show will be shown instead, so there is no need for the video
+					return null;
+				}
+				prepareVideo();
+				return null;
+			}
+		});
 	}
 
 	/**
-	 * Deletes the temporary video files made.
+	 * Chooses the encoding profile of the video, then looks for the video in the video cache,
+	 * or gets ready to encode it one slide at a time if it is not there. Runs on the video rendering thread.
 	 */
-	private void deleteVideoFiles() {
-		try {
-			Files.deleteIfExists(Paths.get(outputVideo)); //deleting the video
+	private void prepareVideo() throws IOException {
+		EncodeTimeBudgets encodeTimeBudgets = EncodeTimeBudgets.getInstance();
+		_preferredProfile = encodeTimeBudgets.getPreferredProfile();
+		EncodingProfile profile = encodeTimeBudgets.chooseProfile();
 
-			for (int i = 0; i < slideFilePaths.size(); i++) {
-				Files.deleteIfExists(slideFilePaths.get(i)); //deleting the text slides files
-				Files.deleteIfExists(Paths.get(slideFilePaths.get(i) + ".png")); //deleting the images slides files
+		VideoCache videoCache = VideoCache.getInstance();
+		_cacheKey = VideoCache.getKey(_videoContent, profile);
+
+		_cachedVideoFilePath = videoCache.getVideoFile(_cacheKey);
+		if (_cachedVideoFilePath == null) {
+			_segmentedVideo = new SegmentedVideo(_videoContent, videoCache.createTempFolder(), profile);
+		}
+	}
+
+	/**
+	 * Encodes the slide of the video in the background, at a low priority, e.g. while the user is spelling its word.
+	 * Does nothing if the video has not been started with prerenderVideo().
+	 * @param slideNumber the position of the slide in the video, starting from 0
+	 */
+	public void prerenderSlide(final int slideNumber) {
+		if (!_renderStarted) {
+			return;
+		}
+		submitRenderTask(new Callable<Path>() {
+			@Override
+			public Path call() throws IOException, InterruptedException {
+				if (_segmentedVideo != null) {
+					_segmentedVideo.encodeSegment(slideNumber, true);
+				}
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Stitches the encoded slides into the finished video in the background (encoding any slides that are still missing),
+	 * unless the video was found in the video cache.
+	 */
+	private void finishVideo() {
+		prerenderVideo();
+		_renderedVideo = submitRenderTask(new Callable<Path>() {
+			@Override
+			public Path call() throws IOException, InterruptedException {
+				if (_preferredProfile != null && _preferredProfile != EncodeTimeBudgets.getInstance().getPreferredProfile()) {
+					//The user has chosen a different profile since the video was started, so start it again with that profile
+					if (_segmentedVideo != null) {
+						_segmentedVideo.discard();
+						_segmentedVideo = null;
+					}
+					prepareVideo();
+				}
+				if (_cachedVideoFilePath != null) {
+					return _cachedVideoFilePath;
+				}
+				if (_segmentedVideo == null) {
+					throw new IOException("The video was not started");
+				}
+
+				VideoCache videoCache = VideoCache.getInstance();
+				Path tempVideoFilePath = videoCache.createTempVideoFile();
+				try {
+					_segmentedVideo.stitch(tempVideoFilePath);
+					return videoCache.addVideoFile(_cacheKey, tempVideoFilePath);
+				} finally {
+					_segmentedVideo = null;
+					Files.deleteIfExists(tempVideoFilePath);
+				}
 			}
-		} catch (IOException e) {
+		});
+	}
+
+	private Future<Path> submitRenderTask(Callable<Path> renderTask) {
+		Future<Path> future = VIDEO_RENDERING_EXECUTOR.submit(renderTask);
+		_renderTasks.add(future);
+		return future;
+	}
+
+	/**
+	 * Stops rendering the video if it is being rendered, e.g. when the quiz it was for is abandoned.
+	 * An unfinished video is deleted, while a finished one stays in the video cache for next time.
+	 */
+	public void cancelVideo() {
+		if (!_renderStarted) {
+			return;
+		}
+		for (Future<Path> renderTask : _renderTasks) {
+			renderTask.cancel(true);
+		}
+		_renderTasks.clear();
+		//Deleting on the rendering thread means the segments are deleted only once ffmpeg has stopped writing them
+		VIDEO_RENDERING_EXECUTOR.submit(new Runnable() {
+			@Override
+			public void run() {
+				if (_segmentedVideo != null) {
+					_segmentedVideo.discard();
+					_segmentedVideo = null;
+				}
+			}
+		});
+	}
+
+	/**
+	 * Plays the video, straight away if it has already been rendered in the background and libVLC has been loaded.
+	 * Otherwise, a loading message is shown until both are ready, as libVLC is never waited for on the Event Dispatch Thread.
+	 * Shows the slide show instead if that is the playback mode, or if libVLC is not available.
+	 */
+	public void playVideo(){
+		MediaPlayerRuntime.Availability availability = MediaPlayerRuntime.getInstance().getAvailability();
+		if (getPlaybackMode() == PlaybackMode.SLIDESHOW || availability == MediaPlayerRuntime.Availability.UNAVAILABLE) {
+			cancelVideo();
+			playSlideShow();
+			return;
+		}
+		finishVideo();
+
+		if (_renderedVideo.isDone() && availability == MediaPlayerRuntime.Availability.AVAILABLE) {
+			showVideo();
+		} else {
+			_worker = new VideoWorker();
+			_worker.execute();
+		}
+	}
+
+	/**
+	 * Opens the video's window and plays the rendered video in it. libVLC must be AVAILABLE.
+	 */
+	private void showVideo() {
+		setupMediaPlayer();
+		setupVideoGUI();
+		playRenderedVideo();
+	}
+
+	/**
+	 * Plays the video once it has been rendered, or shows the slide show instead if the video could not be made.
+	 */
+	private void playRenderedVideo() {
+		try {
+			_video.playMedia(_renderedVideo.get().toString());
+		} catch (InterruptedException e) {
 			e.printStackTrace();
+		} catch (ExecutionException e) {
+			e.getCause().printStackTrace();
+			closeVideo();
+			playSlideShow();
 		}
 	}
 
+	private void playSlideShow() {
+		new SlideShowPlayer(_videoContent).play();
+	}
+
+	/**
+	 * Chooses how review videos are shown from now on
+	 */
+	public static synchronized void setPlaybackMode(PlaybackMode playbackMode) {
+		_playbackMode = playbackMode;
+	}
+
+	public static synchronized PlaybackMode getPlaybackMode() {
+		return _playbackMode;
+	}
+
 	/**
-	 * Swing Worker class that creates the video in the background so that the GUI does not freeze during the process
+	 * Chooses the encoding profile the user would like videos to be encoded with, which is remembered for next time.
+	 * A cheaper profile is used instead while the chosen one is measured to be too slow on this computer.
 	 */
-	private class VideoWorker extends SwingWorker<Void, Void>{
+	public static void setEncodingProfile(EncodingProfile profile) {
+		EncodeTimeBudgets.getInstance().setPreferredProfile(profile);
+	}
+
+	public static EncodingProfile getEncodingProfile() {
+		return EncodeTimeBudgets.getInstance().getPreferredProfile();
+	}
+
+	/**
+	 * Closes the video's window, and gives the media player back to be reused for the next video.
+	 */
+	private void closeVideo() {
+		if (_mediaPlayerComponent == null) { //already closed
+			return;
+		}
+		_video.removeMediaPlayerEventListener(_videoEventListener);
+		_mediaPlayerComponent.remove(_vlcButtons);
+		_videoFrame.dispose();
+		MediaPlayerRuntime.getInstance().releaseComponent(_mediaPlayerComponent);
+		_mediaPlayerComponent = null;
+	}
+
+	public static long getVideoCacheHitCount() {
+		return VideoCache.getInstance().getNumOfHits();
+	}
+
+	public static long getVideoCacheMissCount() {
+		return VideoCache.getInstance().getNumOfMisses();
+	}
+
+	/**
+	 * Swing Worker class that waits for the video to be rendered, and for libVLC to be loaded, in the background so that the GUI does not freeze during the process
+	 */
+	private class VideoWorker extends SwingWorker<Boolean, Void>{
 
 		@Override
-		protected Void doInBackground() {
+		protected Boolean doInBackground() {
 			//a pop up pane  that tells the user the video is under process, expect the user to wait until process is finished
 			_loadingMsgDialog = new JDialog();
 			_loadingMsgDialog.setTitle("Loading");
@@ -237,80 +509,32 @@ public class VideoPlayer {
 			_loadingMsgDialog.setDefaultCloseOperation(JDialog.DISPOSE_ON_CLOSE);
 			_loadingMsgDialog.setVisible(true);
 
-			createWordsAsSlides(_videoContent);
-			createVideoFile();
-			return null;
+			try {
+				_renderedVideo.get();
+			} catch (InterruptedException | ExecutionException e) {
+				//reported when the video is played
+			}
+			//waits here if the warm up thread is still loading libVLC
+			return MediaPlayerRuntime.getInstance().isAvailable();
 		}
 
 		@Override
 		protected void done() {
 			//close dialog
 			_loadingMsgDialog.dispose();
-			//play the manipulated video
-			_video.playMedia(outputVideo);
-		}
-
-		/**
-		 * Given a list of words, this method creates a .png image slide for each word that will contribute to the video later.
-		 * @param contentForVideo
-		 */
-		private void createWordsAsSlides(ArrayList<String> contentForVideo) {
-
+			boolean libVlcAvailable = false;
 			try {
-				//following the arranged order of the array list, create a slide containing the string content
-				slideFilePaths = new ArrayList<Path>();
-				int yPositionOffsetOfSlideText = 50; //y position offset of slide text begins at 50pt 
-				for (int i = 0; i < contentForVideo.size(); i++) {
-					int slideCount = i;
-					Path filePath = Paths.get("./.video/slide" + slideCount);
-					slideFilePaths.add(filePath);
-					Files.createFile(filePath);
-
-					String fileContent = "text 50," + yPositionOffsetOfSlideText + "\"" + contentForVideo.get(i) + "\"";
-					Files.write(filePath, fileContent.getBytes(), StandardOpenOption.APPEND);
-
-					String command = "convert -size 600x460 xc:white -font \"FreeMono\" -pointsize 36 -fill black -draw @" 
-							+ filePath + " " + filePath + ".png";
-
-					ProcessBuilder pb = new ProcessBuilder("bash", "-c", command);
-					Process process;
-					try {
-						process = pb.start();
-						process.waitFor();
-						process.destroy();
-					} catch (IOException e) {
-						e.printStackTrace();
-					} catch (InterruptedException e) {
-						e.printStackTrace();
-					}
-
-					//increment y position offset so that next slide's text appears as though it's 'one line below' the previous slide's text
-					yPositionOffsetOfSlideText += 36; 
-				}
-
-
-			} catch (IOException e1) {
-				e1.printStackTrace();
-			}
-		}
-
-		/**
-		 * After creating a list of image slides, create the video as a slide show with a song playing in the background.
-		 */
-		private void createVideoFile() {
-			String command = "ffmpeg -framerate 1/3 -i ./.video/slide%d.png -i ./.video/bgMusic.mp3 -c:v libx264 -c:a copy -vf fps=25 -pix_fmt yuv420p " + outputVideo;
-
-			ProcessBuilder pb = new ProcessBuilder("bash", "-c", command);
-			Process process;
-			try {
-				process = pb.start();
-				process.waitFor();
-				process.destroy();
-			} catch (IOException e) {
-				e.printStackTrace();
-			} catch (InterruptedException e) {
+				libVlcAvailable = get();
+			} catch (InterruptedException | ExecutionException e) {
 				e.printStackTrace();
 			}
+			if (!libVlcAvailable) {
+				cancelVideo();
+				playSlideShow();
+				return;
+			}
+			//play the manipulated video
+			showVideo();
 		}
 	}
 }
@@ -1,5 +1,8 @@
 package voxspell.wordlist;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * An Exception class for models handling the logic of changing word lists.
  * It is useful to throw an instance of this Exception for handling checked errors caused by the user.
@@ -16,11 +19,31 @@ public class ChangeWordListException extends Exception {
 	 *
 	 */
 	public enum ExceptionType {
-		InvalidCharacter, IncorrectlyFormattedFile
+		InvalidCharacter, IncorrectlyFormattedFile, PartiallyChanged
 	}
 	
+	/**
+	 * A word in a word list file that contains invalid characters, along with where it is in the file,
+	 * so that the user can find and fix every invalid word at once.
+	 * @author echa232
+	 *
+	 */
+	public static class InvalidWord {
+		public final int _lineNumber;
+		public final String _categoryHeading; //the '%' line of the category that the word is in, as written in the file
+		public final String _word;
+
+		public InvalidWord(int lineNumber, String categoryHeading, String word) {
+			_lineNumber = lineNumber;
+			_categoryHeading = categoryHeading;
+			_word = word;
+		}
+	}
+
 	public ExceptionType _exceptionType;
 	public String _errorWord;
+	public ArrayList<InvalidWord> _invalidWords; //only set for InvalidCharacter errors found by checking a whole file
+	public int _numOfInvalidWords; //may be more than the size of _invalidWords, if only the first invalid words were kept
 	
 	/**
 	 * A constructor class that simply specifies what type of checked error has occured.
@@ -41,4 +64,15 @@ public class ChangeWordListException extends Exception {
 		this(type);
 		_errorWord = wordWithErrorInIt;
 	}
+	
+	/**
+	 * A constructor class for when a whole file has been checked and more than one word may contain invalid characters.
+	 * @param invalidWords the (first) invalid words, in the order they appear in the file
+	 * @param numOfInvalidWords the total number of invalid words in the file
+	 */
+	public ChangeWordListException(List<InvalidWord> invalidWords, int numOfInvalidWords) {
+		this(ExceptionType.InvalidCharacter, invalidWords.get(0)._word);
+		_invalidWords = new ArrayList<InvalidWord>(invalidWords);
+		_numOfInvalidWords = numOfInvalidWords;
+	}
 }
@@ -58,7 +58,7 @@ public class ChangeWordListModel {
 	
 	/**
 	 * If the user chooses to change the entire list, follow up with prompting the user to select the file that contains the new word list
-	 * Also gives the user a warning that changing the entire list will remove all previous words, progress and scores.
+	 * Also gives the user a warning that changing the entire list will remove the words that are not in the new list, along with their progress and scores.
 	 */
 	private void showChooseNewListDialog() {
 		JDialog dialog = new JDialog();
@@ -68,7 +68,7 @@ public class ChangeWordListModel {
 		txtWarning.setText("<html>"
 				+ "<p><font face=\"Garuda\" size=\"6\" color=\"red\"><b><i><u>Warning!</u></i></b></font></p>"
 				+ "<p><font face=\"Garuda\" size=\"5\"><b><i>"
-				+ "Changing the entire word list means all previous words, progress and scores will be <u>removed</u>."
+				+ "Changing the entire word list means words that are not in the new list will be <u>removed</u>, along with their progress and scores."
 				+ "</i></b></font></p>"
 				+ "</html>");
 
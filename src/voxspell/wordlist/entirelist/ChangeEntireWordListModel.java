@@ -1,146 +1,347 @@
 package voxspell.wordlist.entirelist;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 
 import voxspell.newquiz.HiddenQuizFilesModel;
 import voxspell.newquiz.HiddenQuizFilesModel.CategoryLevel;
 import voxspell.newquiz.HiddenQuizFilesModel.QuizCategory;
+import voxspell.sounds.SpeechPrewarmer;
 import voxspell.wordlist.ChangeWordListException;
 import voxspell.wordlist.ChangeWordListException.ExceptionType;
 
+/**
+ * Changes the entire word list to the words in a new word list file.
+ * Rather than wiping every category and starting all of the words again from level 1, the new words are merged into the current word list:
+ * words that are new are added to level 1, words that are no longer in the list are removed along with their stats,
+ * and words that are in both keep their level and stats. Only the Level files and stats that the changes affect are written to.
+ * The file is streamed through twice, one line at a time: once to check that it is valid (in parallel, see WordListValidator),
+ * and once to work out which words each category gains and loses. The changes are written to a temporary file as they are found,
+ * and only once every category has been read are they read back from it and made, so the change can be cancelled at any point
+ * before that without anything having to be undone.
+ * Only the words of the category currently being read are kept in memory, so even very large lists can be imported.
+ * @author echa232
+ *
+ */
 public class ChangeEntireWordListModel {
 
+	/**
+	 * Listener interface for objects that want to show the progress of changing the word list (e.g. a progress bar).
+	 * The methods are called on the thread that is changing the word list, which is never the EDT.
+	 * @author echa232
+	 *
+	 */
+	public interface ChangeEntireWordListListener {
+		/**
+		 * Called when the percentage of the file that has been read changes. The file is read twice, so each read is half of the progress.
+		 */
+		void changeProgressed(int percentDone);
+
+		/**
+		 * Called with the text describing the words that have just been added to or removed from the word list.
+		 * Words are passed on a few hundred at a time, rather than one by one.
+		 */
+		void wordsChanged(String changes);
+	}
+
+	/**
+	 * The categories of the new word list file, in the order they are assumed to appear in the file
+	 */
+	public static final QuizCategory[] CATEGORIES_IN_FILE_ORDER = {
+			QuizCategory.Adjectives, QuizCategory.Adverbs, QuizCategory.Nouns, QuizCategory.Verbs
+	};
+
+	private static final int WORDS_PER_CHANGES_UPDATE = 500;
+
+	//The folder the changes file is kept in while the word list is changed (the quiz's own folder, which always exists by then)
+	private static final Path CHANGES_FOLDER_PATH = Paths.get("./.quiz");
+
 	private static File _newListFile;
 	private HiddenQuizFilesModel _filesModel;
-	protected ArrayList<ArrayList<String>> _allWords;
+	private ChangeEntireWordListListener _listener;
+
+	/*
+	 * The changes file lists the changes of each category in the same order as CATEGORIES_IN_FILE_ORDER, one word per line.
+	 * The changes of each category start with a '%' line, followed by the added words (starting with '+') and then the removed words (starting with '-').
+	 */
+	private Path _changesFilePath;
+	private int[] _numOfKeptWords; //in the same order as CATEGORIES_IN_FILE_ORDER
 
-	public ChangeEntireWordListModel() throws ChangeWordListException {
-		readNewWordListIntoArray();
-		clearOldWordList();
-		updateWordList();		
+	private long _newListFileSize;
+	private int _numOfFileReadsDone;
+	private int _percentDone;
+
+	private boolean _cancelled;
+	private boolean _changing; //true once the changes have started being made, after which the change can no longer be cancelled
+
+	public ChangeEntireWordListModel(ChangeEntireWordListListener listener) {
+		_filesModel = HiddenQuizFilesModel.getInstance();
+		_listener = listener;
 	}
 
 	/**
-	 * Create 2D array of words
-	 * Each row is a word in the category, each column represents a category
-	 * Columns are assumed to be in this order: Adjectives, Adverbs, Nouns, Verbs
-	 * This means it is assumed that the file paths follow this order too.
-	 * Declaration: code is partly sourced from assignment 3
-	 * @throws ChangeWordListException
+	 * Changes the entire word list to the words in the new word list file. Takes a while for a large file, so should not be called on the EDT.
+	 * @return false if the change was cancelled (see cancel()), in which case the word list remains unchanged
+	 * @throws ChangeWordListException if the file is not a valid word list, in which case the word list remains unchanged,
+	 * or PartiallyChanged if the changes could not all be made, in which case only the changes passed on to the listener have been made
 	 */
-	@SuppressWarnings("resource")
-	private void readNewWordListIntoArray() throws ChangeWordListException {
+	public boolean changeWordList() throws ChangeWordListException {
+		_newListFileSize = Math.max(1, _newListFile.length());
 
-		int columnIndex = -1; //keep tracks of which list to update in allWords
-		_allWords = new ArrayList<ArrayList<String>>();
-		
+		if (!checkNewWordList()) {
+			return false;
+		}
 		try {
-			BufferedReader br = new BufferedReader(new FileReader(_newListFile));
-			
-			//fills allWords
+			_changesFilePath = Files.createTempFile(CHANGES_FOLDER_PATH, "changes", ".tmp");
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new ChangeWordListException(ExceptionType.IncorrectlyFormattedFile);
+		}
+		try {
+			if (!findChanges() || !startChanging()) {
+				return false;
+			}
+			makeChanges();
+			return true;
+		} finally {
+			try {
+				Files.deleteIfExists(_changesFilePath);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Cancels the change of word list, unless the changes have already started being made.
+	 * @return true if the change has been cancelled, false if it is too late to cancel it
+	 */
+	public synchronized boolean cancel() {
+		if (!_changing) {
+			_cancelled = true;
+		}
+		return _cancelled;
+	}
+
+	private synchronized boolean isCancelled() {
+		return _cancelled;
+	}
+
+	/**
+	 * Marks the point after which the change can no longer be cancelled
+	 * @return false if the change was cancelled before this point
+	 */
+	private synchronized boolean startChanging() {
+		if (_cancelled) {
+			return false;
+		}
+		_changing = true;
+		return true;
+	}
+
+	/**
+	 * Called every so often while the new word list file is being read, with the number of bytes read so far in the current read of the file.
+	 * Passes the progress on to the listener whenever it changes.
+	 * @return false if the change has been cancelled, in which case reading should stop
+	 */
+	boolean continueReading(long bytesRead) {
+		int percentDone = (int) ((100 * _numOfFileReadsDone + 100 * Math.min(bytesRead, _newListFileSize) / _newListFileSize) / 2);
+		if (percentDone != _percentDone) {
+			_percentDone = percentDone;
+			_listener.changeProgressed(percentDone);
+		}
+		return !isCancelled();
+	}
+
+	/**
+	 * Checks the whole of the new word list file before anything is changed, so that an invalid file leaves the old word list as it is.
+	 * Every invalid word in the file is reported together, rather than just the first one (see WordListValidator).
+	 * @return false if the change was cancelled
+	 * @throws ChangeWordListException
+	 */
+	private boolean checkNewWordList() throws ChangeWordListException {
+		boolean checked = new WordListValidator(this, _newListFile, CATEGORIES_IN_FILE_ORDER.length).validate();
+		_numOfFileReadsDone++;
+		return checked;
+	}
+
+	/**
+	 * Reads through the (already checked) new word list file again, working out which words are added to and removed from each category,
+	 * and writes them to the changes file.
+	 * Every line of the file is trimmed and lower cased first, and blank lines are skipped.
+	 * The beginning of each category is marked by a line that starts with '%'.
+	 * Declaration: code is partly sourced from assignment 3
+	 * @return false if the change was cancelled
+	 * @throws ChangeWordListException if the file could not be read, or the changes could not be written
+	 */
+	private boolean findChanges() throws ChangeWordListException {
+		_numOfKeptWords = new int[CATEGORIES_IN_FILE_ORDER.length];
+
+		int columnIndex = -1; //keeps track of which category is being read
+		HashSet<String> newWordsInCategory = new HashSet<String>();
+
+		try (WordListReader br = new WordListReader(_newListFile);
+				BufferedWriter changesWriter = Files.newBufferedWriter(_changesFilePath, StandardCharsets.ISO_8859_1)) {
 			String word = br.readLine();
-			
+
 			while (word != null) {
+				if (!continueReading(br.getBytesRead())) {
+					return false;
+				}
 				word = word.trim().toLowerCase(); //trims all leading and trailing white spaces in a word and stores as lower case
-				
-				//Check if word is a blank line
-				if (word.length() == 0) {
+
+				if (word.length() == 0) { //blank line
 					word = br.readLine();
 					continue;
 				}
-								
-				if (Character.toString(word.charAt(0)).equals("%")) {
-					columnIndex++;
-					_allWords.add(new ArrayList<String>());
-				}
-				else {
-					//Check if word is in the correct format (alphabetical and apostrophes only. Any other characters are invalid)
-					if (!(word.matches("[a-zA-Z']+"))) {
-						//Word contains invalid characters
-						throw new ChangeWordListException(ExceptionType.InvalidCharacter, word);
+
+				if (word.charAt(0) == '%') {
+					if (columnIndex >= 0) {
+						findRemovedWords(columnIndex, newWordsInCategory, changesWriter);
 					}
-					
-					//Check if the word had already been added to allWords before (to prevent repetitive words in quiz)
-					if (_allWords.get(columnIndex).contains(word)) {
-						word = br.readLine();
-						continue;
+					columnIndex++;
+					changesWriter.write("%");
+					changesWriter.newLine();
+				} else if (newWordsInCategory.add(word)) { //prevents repetitive words in quiz
+					if (_filesModel.isWordInCategory(CATEGORIES_IN_FILE_ORDER[columnIndex], word)) {
+						_numOfKeptWords[columnIndex]++;
+					} else {
+						changesWriter.write("+" + word);
+						changesWriter.newLine();
 					}
-					
-					_allWords.get(columnIndex).add(word);
 				}
 				word = br.readLine();
 			}
-			
-			br.close();
-			
-			if (_allWords.size() != 4) { //more than the necessary categories were given in file
-				throw new ChangeWordListException(ExceptionType.IncorrectlyFormattedFile);
+			if (columnIndex >= 0) {
+				findRemovedWords(columnIndex, newWordsInCategory, changesWriter);
 			}
-
-		} catch (FileNotFoundException e) {
-			e.printStackTrace();
 		} catch (IOException e) {
+			//The file could not be read again, so leave the old word list as it is
 			e.printStackTrace();
+			throw new ChangeWordListException(ExceptionType.IncorrectlyFormattedFile);
 		}
+		_numOfFileReadsDone++;
+		return true;
 	}
 
 	/**
-	 * Removes all the words from all files in the category
+	 * Once all of the category's new words have been read, writes the current words of the category that are not among them to the changes file,
+	 * in level order. The new words are then forgotten, ready for the next category.
 	 */
-	private void clearOldWordList() {
-		_filesModel = HiddenQuizFilesModel.getInstance();
-		for (QuizCategory qc : QuizCategory.values()) { //remove all files and set them up again
-			try {
-				for (Path p : qc._categoryLevelFilePaths) {
-					Files.deleteIfExists(p);
-				} 
-				
-				for (Path p : qc._categoryStatsFilePaths) {
-					Files.deleteIfExists(p);
+	private void findRemovedWords(int columnIndex, HashSet<String> newWordsInCategory, BufferedWriter changesWriter) throws IOException {
+		for (List<String> currentWordsAtLevel : _filesModel.readCategoryLevelFilesWordsIntoArray(CATEGORIES_IN_FILE_ORDER[columnIndex])) {
+			for (String currentWord : currentWordsAtLevel) {
+				if (!newWordsInCategory.contains(currentWord)) {
+					changesWriter.write("-" + currentWord);
+					changesWriter.newLine();
 				}
-				
-				Files.deleteIfExists(qc._categoryFolder);
-				
-			} catch (IOException e) {
-				e.printStackTrace();
 			}
 		}
-		
-		_filesModel.setUpHiddenFiles();
-
+		newWordsInCategory.clear();
 	}
 
 	/**
-	 * Adds the new words to the initial level in the category
+	 * Reads the changes back from the changes file and makes them: adds the new words of each category to level 1,
+	 * removes the words that are no longer in the category along with their stats, and starts rendering the speeches of the added words in the background.
+	 * The changes are passed on to the listener as they are made.
+	 * @throws ChangeWordListException PartiallyChanged if the changes file could not be read to the end, after passing on the changes made so far
 	 */
-	private void updateWordList() {
-		//Write all the words of each category into the Level 1 file of that category
-		for (int i = 0; i < _allWords.size(); i++) { //for each category of words
-			for (int j = 0; j < _allWords.get(i).size(); j++) { //for each word in category
-				//add word to level 1 file of the category
-				switch(i) {
-				case 0: //First column in allWords: Adjectives
-					_filesModel.addWordToLevelFile(QuizCategory.Adjectives, CategoryLevel.ONE, _allWords.get(i).get(j));
-					break;
-				case 1: //Second column in allWords: Adverbs
-					_filesModel.addWordToLevelFile(QuizCategory.Adverbs, CategoryLevel.ONE, _allWords.get(i).get(j));
-					break;
-				case 2: //Third column in allWords: Nouns
-					_filesModel.addWordToLevelFile(QuizCategory.Nouns, CategoryLevel.ONE, _allWords.get(i).get(j));
-					break;
-				case 3: //Fourth column in allWords: Verbs
-					_filesModel.addWordToLevelFile(QuizCategory.Verbs, CategoryLevel.ONE, _allWords.get(i).get(j));
-					break;					
+	private void makeChanges() throws ChangeWordListException {
+		StringBuilder changes = new StringBuilder();
+		ArrayList<String> addedWords = new ArrayList<String>(); //added words whose speech has not started being rendered yet
+		try (BufferedReader br = Files.newBufferedReader(_changesFilePath, StandardCharsets.ISO_8859_1)) {
+			int columnIndex = -1;
+			QuizCategory category = null;
+			int numOfWordsInChanges = 0;
+			boolean describingRemovedWords = false;
+
+			String change = br.readLine();
+			while (change != null) {
+				if (change.charAt(0) == '%') {
+					if (columnIndex >= 0) {
+						finishCategoryChanges(columnIndex, changes, describingRemovedWords, addedWords);
+					}
+					columnIndex++;
+					category = CATEGORIES_IN_FILE_ORDER[columnIndex];
+					numOfWordsInChanges = 0;
+					describingRemovedWords = false;
+
+					//First describe the category, then the words that are added to and removed from the quiz files
+					changes.append("\nThe following words have been added to the " + category.toString() + " category: \n");
+				} else {
+					String word = change.substring(1);
+					if (change.charAt(0) == '+') { //the word is new, so add it to the lowest Category Level
+						_filesModel.addWordToLevelFile(category, CategoryLevel.ONE, word);
+						addedWords.add(word);
+						if (addedWords.size() == WORDS_PER_CHANGES_UPDATE) {
+							SpeechPrewarmer.getInstance().prewarm(addedWords);
+							addedWords.clear();
+						}
+					} else {
+						if (!describingRemovedWords) {
+							changes.append("The following words have been removed from the " + category.toString() + " category: \n");
+							describingRemovedWords = true;
+						}
+						_filesModel.removeWordFromAllStatsFile(category, word);
+						for (CategoryLevel level : CategoryLevel.values()) {
+							_filesModel.removeWordFromLevelFile(category, level, word);
+						}
+					}
+					changes.append(word).append("\n");
+					numOfWordsInChanges = passOnChangesIfFull(changes, numOfWordsInChanges + 1);
 				}
+				change = br.readLine();
+			}
+			if (columnIndex >= 0) {
+				finishCategoryChanges(columnIndex, changes, describingRemovedWords, addedWords);
+			}
+		} catch (IOException e) {
+			//The rest of the changes are lost, so pass on the ones that have been made and let the user know the word list is only partly changed
+			e.printStackTrace();
+			if (changes.length() > 0) {
+				_listener.wordsChanged(changes.toString());
 			}
+			SpeechPrewarmer.getInstance().prewarm(addedWords);
+			throw new ChangeWordListException(ExceptionType.PartiallyChanged);
+		}
+	}
+
+	/**
+	 * Passes on the rest of the category's changes to the listener, and starts rendering the speeches of the rest of its added words
+	 */
+	private void finishCategoryChanges(int columnIndex, StringBuilder changes, boolean describingRemovedWords, ArrayList<String> addedWords) {
+		QuizCategory category = CATEGORIES_IN_FILE_ORDER[columnIndex];
+		if (!describingRemovedWords) {
+			changes.append("The following words have been removed from the " + category.toString() + " category: \n");
+		}
+		changes.append(_numOfKeptWords[columnIndex] + " words are still in the category, and keep their level and stats.\n");
+		_listener.wordsChanged(changes.toString());
+		changes.setLength(0);
+
+		SpeechPrewarmer.getInstance().prewarm(addedWords);
+		addedWords.clear();
+	}
+
+	/**
+	 * Passes the changes on to the listener, and empties them, once they describe enough words.
+	 * @return the number of words the changes describe afterwards
+	 */
+	private int passOnChangesIfFull(StringBuilder changes, int numOfWordsInChanges) {
+		if (numOfWordsInChanges < WORDS_PER_CHANGES_UPDATE) {
+			return numOfWordsInChanges;
 		}
+		_listener.wordsChanged(changes.toString());
+		changes.setLength(0);
+		return 0;
 	}
 
 	public static void setNewFile(File file) {
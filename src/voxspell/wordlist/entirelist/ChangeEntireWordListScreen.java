@@ -4,12 +4,17 @@ import java.awt.Color;
 import java.awt.Font;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 import javax.swing.JButton;
 import javax.swing.JLabel;
 import javax.swing.JProgressBar;
 import javax.swing.JScrollPane;
 import javax.swing.JTextArea;
+import javax.swing.SwingWorker;
 import javax.swing.border.MatteBorder;
 import javax.swing.border.TitledBorder;
 
@@ -17,7 +22,12 @@ import voxspell.Screen;
 import voxspell.VoxSpellApp;
 import voxspell.VoxSpellApp.AppScreen;
 import voxspell.newquiz.HiddenQuizFilesModel.QuizCategory;
+import voxspell.sounds.SpeechPrewarmer;
+import voxspell.sounds.SpeechPrewarmer.SpeechPrewarmerListener;
 import voxspell.wordlist.ChangeWordListException;
+import voxspell.wordlist.ChangeWordListException.ExceptionType;
+import voxspell.wordlist.ChangeWordListException.InvalidWord;
+import voxspell.wordlist.entirelist.ChangeEntireWordListModel.ChangeEntireWordListListener;
 
 /**
  * This class represents the screen object that is shown when the user wants to change the entire word list
@@ -30,11 +40,16 @@ import voxspell.wordlist.ChangeWordListException;
 public class ChangeEntireWordListScreen extends Screen {
 
 	JButton _btnReturn;
+	JButton _btnCancelChange;
+	JButton _btnStopPrewarm;
 	JLabel _lblProgress;
 	JProgressBar _progressBar;
 	JTextArea _progressTxtArea;
 
-	private ChangeEntireWordListModel _model;
+	private WordListChanger _wordListChanger; //changes the word list in the background
+
+	//True once the word list has been changed and the progress bar has switched to showing the progress of preparing the new words' speech
+	private boolean _showingPrewarmProgress;
 
 	public ChangeEntireWordListScreen(VoxSpellApp screenOwner) {
 		super(screenOwner);
@@ -109,6 +124,31 @@ public class ChangeEntireWordListScreen extends Screen {
 		_screenPanel.add(_btnReturn);
 		_btnReturn.setVisible(false); //User cannot return to main menu until file has finished processing.
 
+		/*
+		 * Build the GUI section that allows user to cancel changing the word list (in place of the return button, which is hidden until then)
+		 */
+		_btnCancelChange = new JButton("Cancel");
+		_btnCancelChange.setToolTipText("Click this to stop changing the word list and keep the current word list!");
+		_btnCancelChange.setForeground(Color.BLACK);
+		_btnCancelChange.setFont(new Font("Garuda", Font.BOLD | Font.ITALIC, 18));
+		_btnCancelChange.setBorder(new MatteBorder(1, 5, 1, 1, (Color) new Color(255, 204, 0)));
+		_btnCancelChange.setBackground(Color.WHITE);
+		_btnCancelChange.setBounds(280, 510, 250, 40);
+		_screenPanel.add(_btnCancelChange);
+		_btnCancelChange.setVisible(false);
+
+		/*
+		 * Build the GUI section that allows user to stop preparing the speech of the new words
+		 */
+		_btnStopPrewarm = new JButton("Stop preparing speech");
+		_btnStopPrewarm.setToolTipText("The speech of the new words is being prepared in the background so quizzes start quicker. Click this to stop it!");
+		_btnStopPrewarm.setForeground(Color.BLACK);
+		_btnStopPrewarm.setFont(new Font("Garuda", Font.BOLD | Font.ITALIC, 16));
+		_btnStopPrewarm.setBorder(new MatteBorder(1, 5, 1, 1, (Color) new Color(255, 204, 0)));
+		_btnStopPrewarm.setBackground(Color.WHITE);
+		_btnStopPrewarm.setBounds(545, 510, 230, 40);
+		_screenPanel.add(_btnStopPrewarm);
+		_btnStopPrewarm.setVisible(false);
 	}
 
 	@Override
@@ -119,61 +159,224 @@ public class ChangeEntireWordListScreen extends Screen {
 				_owner.changeScreen(AppScreen.MAIN_MENU);
 			}			
 		});		
+
+		_btnCancelChange.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				if (_wordListChanger.cancelChange()) {
+					_btnCancelChange.setEnabled(false);
+					_lblProgress.setText("Cancelling...");
+				}
+			}
+		});
+
+		_btnStopPrewarm.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				SpeechPrewarmer.getInstance().cancel();
+			}
+		});
+
+		SpeechPrewarmer.getInstance().addListener(new SpeechPrewarmerListener() {
+			@Override
+			public void prewarmProgressed(int numOfWordsDone, int numOfWords) {
+				if (!_showingPrewarmProgress) {
+					return;
+				}
+				_progressBar.setMaximum(numOfWords);
+				_progressBar.setValue(numOfWordsDone);
+				_progressBar.setString("Preparing the speech of the new words: " + numOfWordsDone + " of " + numOfWords);
+			}
+
+			@Override
+			public void prewarmFinished(boolean cancelled, int numOfWordsSkipped) {
+				if (!_showingPrewarmProgress) {
+					return;
+				}
+				if (cancelled) {
+					_progressBar.setString("Stopped preparing the speech of the new words");
+				} else if (numOfWordsSkipped > 0) {
+					_progressBar.setValue(_progressBar.getMaximum());
+					_progressBar.setString("Speech storage is full: " + numOfWordsSkipped + " words will be prepared later");
+				} else {
+					_progressBar.setValue(_progressBar.getMaximum());
+					_progressBar.setString("The speech of the new words is ready!");
+				}
+				_btnStopPrewarm.setVisible(false);
+			}
+		});
 	}
 
 	/**
 	 * This method is called when the user wants to change the entire word list.
-	 * A model is created and the model handles all of the logic relating to changing the word list.
-	 * This method is responsible for catching any exceptions thrown by the model.
-	 * Depending on the exception caught, the GUI view will change and show a slightly different view to to the user.
+	 * A model is created and the model handles all of the logic relating to changing the word list, in the background (see WordListChanger).
+	 * The progress bar shows how much of the new word list file has been read, and the user can cancel the change until the words start changing.
 	 */
 	public void start() {
-		try {
-			_model = new ChangeEntireWordListModel();
-		} catch (ChangeWordListException e) {
-			_progressTxtArea.setText("Sorry, an error occurred during processing. The word list remains unchanged.\n");
-			
-			switch(e._exceptionType) {
-			case IncorrectlyFormattedFile:
-				_progressTxtArea.append("Error: Selected file is not correctly formatted\n"
-						+ "Please make sure there are list of words for the each of the categories "
-						+ "(i.e. Adjectives, Adverbs, Nouns and Verbs). "
-						+ "Please also make sure that the beginning of each category starts with a '%' sign before the category's name "
-						+ "(e.g. %Adjectives or %Adverbs).");
-				break;
-			case InvalidCharacter:
-				_progressTxtArea.append("Error: Invalid character(s) detected in a word in the selected file\n"
-						+ "The word containing the invalid character(s) is: "
-						+ e._errorWord
-						+ "\nPlease remove the invalid character(s) in the file and try again.");
-				break;
+		_showingPrewarmProgress = false;
+		_progressBar.setIndeterminate(false);
+		_progressBar.setStringPainted(false);
+		_progressBar.setMaximum(100);
+		_progressBar.setValue(0);
+		_btnStopPrewarm.setVisible(false);
+		_btnReturn.setVisible(false);
+		_btnCancelChange.setEnabled(true);
+		_btnCancelChange.setVisible(true);
+		_lblProgress.setText("Processing new word list...");
+		_progressTxtArea.setText("");
+
+		_wordListChanger = new WordListChanger();
+		_wordListChanger.addPropertyChangeListener(new PropertyChangeListener() {
+			@Override
+			public void propertyChange(PropertyChangeEvent evt) {
+				if (evt.getPropertyName().equals("progress")) {
+					_progressBar.setValue((Integer) evt.getNewValue());
+				}
 			}
-			
-			_progressBar.setIndeterminate(false);
-			_lblProgress.setText("No progress available due to error");
-			_btnReturn.setVisible(true);
+		});
+		_wordListChanger.execute();
+	}
+
+	/**
+	 * This method is called if the model could not change the word list.
+	 * Depending on the exception thrown by the model, the GUI view will change and show a slightly different view to to the user.
+	 */
+	private void showError(ChangeWordListException e) {
+		if (e._exceptionType == ExceptionType.PartiallyChanged) {
+			//Keep the words that have been changed on show, as they are the changes that have been made
+			_progressTxtArea.append("\nSorry, an error occurred while the words were being changed, so the word list has only been partly changed.\n"
+					+ "Only the changes listed above have been made. Please select the same file again to finish changing the word list.");
+			_progressBar.setValue(0);
+			_lblProgress.setText("The word list has only been partly changed");
 			return;
 		}
+		_progressTxtArea.setText("Sorry, an error occurred during processing. The word list remains unchanged.\n");
 		
-		//No exceptions caught so far, which means changing the entire word list is complete.
-		_progressBar.setIndeterminate(false); 
+		switch(e._exceptionType) {
+		case IncorrectlyFormattedFile:
+			_progressTxtArea.append("Error: Selected file is not correctly formatted\n"
+					+ "Please make sure there are list of words for the each of the categories "
+					+ "(i.e. Adjectives, Adverbs, Nouns and Verbs). "
+					+ "Please also make sure that the beginning of each category starts with a '%' sign before the category's name "
+					+ "(e.g. %Adjectives or %Adverbs).");
+			break;
+		case InvalidCharacter:
+			StringBuilder invalidWords = new StringBuilder();
+			invalidWords.append("Error: Invalid character(s) detected in " + e._numOfInvalidWords + " word(s) in the selected file\n"
+					+ "The words containing the invalid character(s) are:\n");
+			for (InvalidWord invalidWord : e._invalidWords) {
+				invalidWords.append("Line " + invalidWord._lineNumber + " (" + invalidWord._categoryHeading + "): " + invalidWord._word + "\n");
+			}
+			if (e._numOfInvalidWords > e._invalidWords.size()) {
+				invalidWords.append("...and " + (e._numOfInvalidWords - e._invalidWords.size()) + " more\n");
+			}
+			invalidWords.append("Please remove the invalid character(s) in the file and try again.");
+			_progressTxtArea.append(invalidWords.toString());
+			break;
+		}
 		
+		_progressBar.setValue(0);
+		_lblProgress.setText("No progress available due to error");
+	}
+
+	/**
+	 * This method is called once the model has changed the word list.
+	 */
+	private void showChangeComplete() {
 		//Update progress panel
 		_lblProgress.setText("Complete! Current word list has been successfully updated.");
 		_progressBar.setValue(100);
+		_progressTxtArea.setCaretPosition(0);
+
+		//The speech of the new words is now being prepared in the background, so switch the progress bar to show that instead
+		if (SpeechPrewarmer.getInstance().isRunning()) {
+			_showingPrewarmProgress = true;
+			_progressBar.setValue(0);
+			_progressBar.setStringPainted(true);
+			_progressBar.setString("Preparing the speech of the new words...");
+			_btnStopPrewarm.setVisible(true);
+		}
+	}
 
-		QuizCategory[] categories = QuizCategory.values();
-		//Update JTextArea for successful transfer
-		for (int i = 0; i < _model._allWords.size(); i++) {
-			//First print out the category name, then print out all the new words that have been updated into the quiz files
-			_progressTxtArea.append("\nThe following words have been added to the " + categories[i].toString() + " category: \n");
-			for (int j = 0; j < _model._allWords.get(i).size(); j++) {
-				_progressTxtArea.append(_model._allWords.get(i).get(j) + "\n");
+	/**
+	 * Changes the word list in the background, so that the screen keeps responding however large the new word list is.
+	 * The words that are added and removed are published a few hundred at a time, and every batch that arrives on the EDT
+	 * is added to the text area in a single append, as every append updates the text area.
+	 * @author echa232
+	 *
+	 */
+	private class WordListChanger extends SwingWorker<Boolean, String> implements ChangeEntireWordListListener {
+
+		private ChangeEntireWordListModel _changerModel;
+
+		public WordListChanger() {
+			_changerModel = new ChangeEntireWordListModel(this);
+		}
+
+		/**
+		 * Cancels the change, unless the words have already started changing
+		 * @return true if the change has been cancelled
+		 */
+		public boolean cancelChange() {
+			return _changerModel.cancel();
+		}
+
+		@Override
+		protected Boolean doInBackground() throws ChangeWordListException {
+			if (!_changerModel.changeWordList()) {
+				return false;
 			}
+			//published rather than added in done(), so that it comes after the words that have been changed
+			publish("\nNow you can enjoy new spelling quizzes with the new words!\n");
+			return true;
 		}
 
-		_progressTxtArea.append("\nNow you can enjoy new spelling quizzes with the new words!\n");
-		_progressTxtArea.setCaretPosition(0);
-		_btnReturn.setVisible(true);
+		@Override
+		public void changeProgressed(int percentDone) {
+			setProgress(percentDone);
+		}
+
+		@Override
+		public void wordsChanged(String changes) {
+			publish(changes);
+		}
+
+		@Override
+		protected void process(List<String> changes) {
+			StringBuilder text = new StringBuilder();
+			for (String change : changes) {
+				text.append(change);
+			}
+			_progressTxtArea.append(text.toString());
+		}
+
+		@Override
+		protected void done() {
+			_btnCancelChange.setVisible(false);
+			_btnReturn.setVisible(true);
+
+			boolean changed;
+			try {
+				changed = get();
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+				return;
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof ChangeWordListException) {
+					showError((ChangeWordListException) e.getCause());
+				} else {
+					e.printStackTrace();
+				}
+				return;
+			}
+
+			if (changed) {
+				showChangeComplete();
+			} else {
+				_progressTxtArea.setText("Changing the word list has been cancelled. The word list remains unchanged.\n");
+				_progressBar.setValue(0);
+				_lblProgress.setText("Cancelled");
+			}
+		}
 	}
 }
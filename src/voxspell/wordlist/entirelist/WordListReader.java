@@ -0,0 +1,69 @@
+package voxspell.wordlist.entirelist;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+/**
+ * Reads a word list file one line at a time, like a BufferedReader over a FileReader,
+ * while keeping track of how many bytes of the file have been read so far (e.g. for a progress bar).
+ * The count includes bytes that have been buffered but not returned as lines yet, so it runs slightly ahead of the lines.
+ * @author echa232
+ *
+ */
+class WordListReader extends BufferedReader {
+
+	private CountingInputStream _countingInputStream;
+
+	WordListReader(File wordListFile) throws FileNotFoundException {
+		this(new CountingInputStream(new FileInputStream(wordListFile)));
+	}
+
+	private WordListReader(CountingInputStream countingInputStream) {
+		super(new InputStreamReader(countingInputStream));
+		_countingInputStream = countingInputStream;
+	}
+
+	long getBytesRead() {
+		return _countingInputStream._bytesRead;
+	}
+
+	private static class CountingInputStream extends FilterInputStream {
+
+		private volatile long _bytesRead;
+
+		private CountingInputStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b >= 0) {
+				_bytesRead++;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int numOfBytes = super.read(b, off, len);
+			if (numOfBytes > 0) {
+				_bytesRead += numOfBytes;
+			}
+			return numOfBytes;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long numOfBytes = super.skip(n);
+			_bytesRead += numOfBytes;
+			return numOfBytes;
+		}
+	}
+}
@@ -0,0 +1,206 @@
+package voxspell.wordlist.entirelist;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+import voxspell.wordlist.ChangeWordListException;
+import voxspell.wordlist.ChangeWordListException.ExceptionType;
+import voxspell.wordlist.ChangeWordListException.InvalidWord;
+
+/**
+ * Checks a new word list file before it replaces the current word list, finding every invalid word rather than stopping at the first one,
+ * so that the user can fix all of them before importing the file again.
+ * The file is read one line at a time, and the words are handed out in chunks to be checked on every core with fork-join.
+ * Only a few chunks are being checked at any one time, so the whole file is never held in memory.
+ * How far through the file the check is goes to the ChangeEntireWordListModel that the check is for, which can also cancel it.
+ * @author echa232
+ *
+ */
+class WordListValidator {
+
+	private static final int WORDS_PER_CHUNK = 8192;
+	private static final int WORDS_PER_TASK = 1024; //chunks are split into tasks of at most this many words, one for each core to check
+	private static final int MAX_CHUNKS_BEING_CHECKED = 2 * Runtime.getRuntime().availableProcessors();
+
+	//How many invalid words are reported. Any more are only counted, as a file that is mostly invalid is probably not a word list at all.
+	private static final int MAX_REPORTED_INVALID_WORDS = 100;
+
+	private ChangeEntireWordListModel _model;
+	private File _wordListFile;
+	private int _expectedNumOfCategories;
+
+	private ArrayList<InvalidWord> _invalidWords;
+	private int _numOfInvalidWords;
+
+	WordListValidator(ChangeEntireWordListModel model, File wordListFile, int expectedNumOfCategories) {
+		_model = model;
+		_wordListFile = wordListFile;
+		_expectedNumOfCategories = expectedNumOfCategories;
+		_invalidWords = new ArrayList<InvalidWord>();
+	}
+
+	/**
+	 * Checks that the file has a list of words for each of the categories, and that every word only contains letters and apostrophes.
+	 * The beginning of each category is marked by a line that starts with '%', and blank lines are skipped.
+	 * @return false if the change of word list was cancelled before the whole file was checked
+	 * @throws ChangeWordListException IncorrectlyFormattedFile if the file does not have the right categories (or could not be read),
+	 * or InvalidCharacter with all of the invalid words if there are any
+	 */
+	boolean validate() throws ChangeWordListException {
+		ForkJoinPool pool = ForkJoinPool.commonPool();
+		ArrayDeque<ForkJoinTask<ArrayList<InvalidWord>>> chunksBeingChecked = new ArrayDeque<ForkJoinTask<ArrayList<InvalidWord>>>();
+
+		int numOfCategories = 0;
+		boolean wordOutsideOfCategory = false;
+
+		try (WordListReader br = new WordListReader(_wordListFile)) {
+			String categoryHeading = null;
+			Chunk chunk = new Chunk();
+			int lineNumber = 0;
+			String line = br.readLine();
+
+			while (line != null) {
+				if (!_model.continueReading(br.getBytesRead())) {
+					cancel(chunksBeingChecked);
+					return false;
+				}
+				lineNumber++;
+				String word = line.trim();
+
+				if (word.length() == 0) { //blank line
+					line = br.readLine();
+					continue;
+				}
+
+				if (word.charAt(0) == '%') {
+					numOfCategories++;
+					categoryHeading = word;
+				} else if (categoryHeading == null) {
+					wordOutsideOfCategory = true;
+				} else {
+					chunk.add(lineNumber, categoryHeading, word);
+					if (chunk._size == WORDS_PER_CHUNK) {
+						if (chunksBeingChecked.size() == MAX_CHUNKS_BEING_CHECKED) {
+							addInvalidWords(chunksBeingChecked.poll().join());
+						}
+						chunksBeingChecked.add(pool.submit(new CheckWordsTask(chunk, 0, chunk._size)));
+						chunk = new Chunk();
+					}
+				}
+				line = br.readLine();
+			}
+			chunksBeingChecked.add(pool.submit(new CheckWordsTask(chunk, 0, chunk._size)));
+		} catch (IOException e) {
+			//The file could not be read, so leave the old word list as it is
+			e.printStackTrace();
+			cancel(chunksBeingChecked);
+			throw new ChangeWordListException(ExceptionType.IncorrectlyFormattedFile);
+		}
+
+		if (wordOutsideOfCategory || numOfCategories != _expectedNumOfCategories) { //more or less than the necessary categories were given in file
+			cancel(chunksBeingChecked);
+			throw new ChangeWordListException(ExceptionType.IncorrectlyFormattedFile);
+		}
+
+		//The chunks are joined in the order they were read, so the invalid words are reported in the order they appear in the file
+		while (!chunksBeingChecked.isEmpty()) {
+			addInvalidWords(chunksBeingChecked.poll().join());
+		}
+		if (_numOfInvalidWords > 0) {
+			throw new ChangeWordListException(_invalidWords, _numOfInvalidWords);
+		}
+		return true;
+	}
+
+	private void addInvalidWords(ArrayList<InvalidWord> invalidWords) {
+		_numOfInvalidWords += invalidWords.size();
+		for (InvalidWord invalidWord : invalidWords) {
+			if (_invalidWords.size() == MAX_REPORTED_INVALID_WORDS) {
+				return;
+			}
+			_invalidWords.add(invalidWord);
+		}
+	}
+
+	private void cancel(ArrayDeque<ForkJoinTask<ArrayList<InvalidWord>>> chunksBeingChecked) {
+		for (ForkJoinTask<ArrayList<InvalidWord>> chunk : chunksBeingChecked) {
+			chunk.cancel(false);
+		}
+		chunksBeingChecked.clear();
+	}
+
+	/**
+	 * Returns true if the word only contains letters and apostrophes (any other characters are invalid).
+	 * Checked by hand rather than with a regular expression, as it is checked for every line of the file.
+	 */
+	private static boolean isValidWord(String word) {
+		for (int i = 0; i < word.length(); i++) {
+			char c = word.charAt(i);
+			if (!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '\'')) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * A run of words read from the file, along with the line number and category of each word
+	 */
+	private static class Chunk {
+		private int[] _lineNumbers = new int[WORDS_PER_CHUNK];
+		private String[] _categoryHeadings = new String[WORDS_PER_CHUNK]; //shared with every other word in the category, so they cost next to nothing
+		private String[] _words = new String[WORDS_PER_CHUNK];
+		private int _size;
+
+		private void add(int lineNumber, String categoryHeading, String word) {
+			_lineNumbers[_size] = lineNumber;
+			_categoryHeadings[_size] = categoryHeading;
+			_words[_size] = word;
+			_size++;
+		}
+	}
+
+	/**
+	 * Checks the words of a chunk from start (inclusive) to end (exclusive), splitting them in half until there are few enough to check on one thread.
+	 * Returns the invalid words, in the order they appear in the chunk.
+	 */
+	@SuppressWarnings("serial")
+	private static class CheckWordsTask extends RecursiveTask<ArrayList<InvalidWord>> {
+
+		private Chunk _chunk;
+		private int _start;
+		private int _end;
+
+		private CheckWordsTask(Chunk chunk, int start, int end) {
+			_chunk = chunk;
+			_start = start;
+			_end = end;
+		}
+
+		@Override
+		protected ArrayList<InvalidWord> compute() {
+			if (_end - _start > WORDS_PER_TASK) {
+				int middle = (_start + _end) >>> 1;
+				CheckWordsTask firstHalf = new CheckWordsTask(_chunk, _start, middle);
+				firstHalf.fork();
+				ArrayList<InvalidWord> invalidWordsInSecondHalf = new CheckWordsTask(_chunk, middle, _end).compute();
+				ArrayList<InvalidWord> invalidWords = firstHalf.join();
+				invalidWords.addAll(invalidWordsInSecondHalf);
+				return invalidWords;
+			}
+
+			ArrayList<InvalidWord> invalidWords = new ArrayList<InvalidWord>();
+			for (int i = _start; i < _end; i++) {
+				if (!isValidWord(_chunk._words[i])) {
+					invalidWords.add(new InvalidWord(_chunk._lineNumbers[i], _chunk._categoryHeadings[i], _chunk._words[i]));
+				}
+			}
+			return invalidWords;
+		}
+	}
+}
@@ -6,6 +6,7 @@ import java.util.List;
 import voxspell.newquiz.HiddenQuizFilesModel;
 import voxspell.newquiz.HiddenQuizFilesModel.CategoryLevel;
 import voxspell.newquiz.HiddenQuizFilesModel.QuizCategory;
+import voxspell.sounds.SpeechPrewarmer;
 
 /**
  * A class representing the model that handles the logic for when the user wants to change only some parts of the current word list.
@@ -52,7 +53,7 @@ public class ChangePartialWordListModel {
 	private void addWordsToWordList() {
 		
 		_allWordsInCategory = _quizFilesModel.readCategoryLevelFilesWordsIntoArray(_categoryToChange);
-
+		ArrayList<String> addedWords = new ArrayList<String>();
 
 		for (int i = 0; i < _wordsToAdd.size(); i++) {
 			String wordToAdd = _wordsToAdd.get(i);
@@ -61,9 +62,13 @@ public class ChangePartialWordListModel {
 			}
 			else { //add new word to the current word list. As the word is new, add it to the lowest Category Level
 				_quizFilesModel.addWordToLevelFile(_categoryToChange, CategoryLevel.ONE, wordToAdd);
+				addedWords.add(wordToAdd);
 			}
 
 		}
+
+		//Render the speeches of the added words in the background
+		SpeechPrewarmer.getInstance().prewarm(addedWords);
 	}
 
 	/**